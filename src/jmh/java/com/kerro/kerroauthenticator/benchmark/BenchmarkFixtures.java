@@ -0,0 +1,43 @@
+package com.kerro.kerroauthenticator.benchmark;
+
+import com.kerro.kerroauthenticator.jwt.JwtKeyRing;
+import com.kerro.kerroauthenticator.jwt.JwtService;
+import com.kerro.kerroauthenticator.jwt.VerifiedTokenCache;
+import com.kerro.kerroauthenticator.model.User;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Objects shared by the benchmarks, built the same way Spring wires them.
+ */
+final class BenchmarkFixtures {
+
+    static final long TOKEN_TTL_MILLIS = 15 * 60 * 1000L;
+    private static final String SECRET = "3cfa76ef14937c1c0ea519f8fc057a80fcd04a7420f8e8bcd0a7567c272e007b";
+
+    private BenchmarkFixtures() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    static JwtService jwtService(long cacheSize) {
+        JwtKeyRing keyRing = JwtKeyRing.hmac(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new JwtService(keyRing, TOKEN_TTL_MILLIS, new VerifiedTokenCache(cacheSize, meterRegistry), meterRegistry);
+    }
+
+    static User user() {
+        return User.builder()
+                .id(1L)
+                .username("benchmark")
+                .email("benchmark@kerro.com")
+                .password("$2a$10$abcdefghijklmnopqrstuuJ3qvFKqYSIkVSmNU5Zp1Pb9dC0w8vzm")
+                .role("user")
+                .accountNonExpired(true)
+                .accountNonLocked(true)
+                .credentialsNonExpired(true)
+                .enabled(true)
+                .build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.kerro.kerroauthenticator.benchmark;
+
+import com.kerro.kerroauthenticator.jwt.JwtAuthenticationFilter;
+import com.kerro.kerroauthenticator.jwt.JwtService;
+import com.kerro.kerroauthenticator.jwt.RejectedTokenCache;
+import com.kerro.kerroauthenticator.jwt.TokenBlacklistService;
+import com.kerro.kerroauthenticator.jwt.VerifiedTokenCache;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.repository.UserRepository;
+import com.kerro.kerroauthenticator.security.CustomUserDetailsService;
+import com.kerro.kerroauthenticator.security.UserDetailsCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * One authenticated request through the filter: pre-check, cached verification, revocation
+ * lookup against an in-process Redis stand-in and principal resolution from the near-cache
+ * (or from the claims in claims-only mode). Network latency is deliberately excluded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean claimsOnly;
+
+    @Param({"false", "true"})
+    public boolean bloomFilter;
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    private JwtAuthenticationFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        User user = BenchmarkFixtures.user();
+        JwtService jwtService = BenchmarkFixtures.jwtService(100_000);
+        RedisTemplate<String, String> redisTemplate = new NotRevokedRedisTemplate();
+        RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findByIdentifier(anyString())).thenReturn(Optional.of(user));
+        UserDetailsCache userDetailsCache = new UserDetailsCache(userRepository, redisTemplate, listenerContainer,
+                meterRegistry, Duration.ofMinutes(5), 10_000);
+
+        // sin filtro Bloom cada petición consulta el stand-in de Redis
+        TokenBlacklistService blacklist = new TokenBlacklistService(redisTemplate,
+                new VerifiedTokenCache(100_000, meterRegistry), listenerContainer,
+                BenchmarkFixtures.TOKEN_TTL_MILLIS, Duration.ofDays(14), bloomFilter,
+                Duration.ofHours(1), 100_000, 0.001, 5, Duration.ofSeconds(10), false, meterRegistry);
+        if (bloomFilter) {
+            blacklist.cleanup();
+        }
+
+        filter = new JwtAuthenticationFilter(jwtService, new CustomUserDetailsService(userDetailsCache), blacklist,
+                new RejectedTokenCache(10_000, Duration.ofMinutes(5), meterRegistry),
+                claimsOnly, Duration.ofMinutes(15), meterRegistry);
+        authorization = "Bearer " + jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public Object authenticatedRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/auth/me");
+        request.addHeader("Authorization", authorization);
+        filter.doFilter(request, new MockHttpServletResponse(), NO_OP_CHAIN);
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+
+    /**
+     * Answers every revocation check as "not revoked" and accepts the scans of the filter rebuild
+     * as empty, without a connection.
+     */
+    static final class NotRevokedRedisTemplate extends RedisTemplate<String, String> {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            return (T) Long.valueOf(0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Cursor<String> scan(ScanOptions options) {
+            return Mockito.mock(Cursor.class);
+        }
+
+        @Override
+        public Long convertAndSend(String channel, Object message) {
+            return 0L;
+        }
+    }
+}
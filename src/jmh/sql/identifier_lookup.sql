@@ -0,0 +1,77 @@
+-- Compares the old username-or-email lookup with the normalized single-column lookups on 10M users.
+-- Run against a scratch Postgres (not the service database), e.g. the one from docker-compose:
+--
+--     psql "$DB_URL" -f src/jmh/sql/identifier_lookup.sql
+--
+-- Everything is created in the identifier_bench schema, which is dropped at the end.
+\set ON_ERROR_STOP on
+\set users 10000000
+\set samples 10000
+
+DROP SCHEMA IF EXISTS identifier_bench CASCADE;
+CREATE SCHEMA identifier_bench;
+SET search_path = identifier_bench;
+
+-- Same shape as users after V3; the legacy constraints are kept here so the old query has its best plan
+CREATE TABLE users (
+    id                  bigint PRIMARY KEY,
+    username            varchar(255) NOT NULL,
+    email               varchar(255) NOT NULL,
+    username_normalized varchar(255) NOT NULL,
+    email_normalized    varchar(255) NOT NULL,
+    password            varchar(255) NOT NULL,
+    role                varchar(255)
+);
+
+INSERT INTO users
+SELECT i, 'User' || i, 'User' || i || '@Example.com', 'user' || i, 'user' || i || '@example.com',
+       '$2a$10$abcdefghijklmnopqrstuuABCDEFGHIJKLMNOPQRSTUVWXYZ01234', 'user'
+  FROM generate_series(1, :users) AS i;
+
+ALTER TABLE users ADD CONSTRAINT uk_users_username UNIQUE (username);
+ALTER TABLE users ADD CONSTRAINT uk_users_email UNIQUE (email);
+ALTER TABLE users ADD CONSTRAINT uk_users_username_normalized UNIQUE (username_normalized);
+ALTER TABLE users ADD CONSTRAINT uk_users_email_normalized UNIQUE (email_normalized);
+VACUUM ANALYZE users;
+
+-- Plans: the query Spring Data derived from findByUsernameOrEmail(x, x) against the two lookups of findByIdentifier
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM users WHERE username = 'User4242424' OR email = 'User4242424';
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM users WHERE username_normalized = 'user4242424';
+EXPLAIN (ANALYZE, BUFFERS) SELECT * FROM users WHERE email_normalized = 'user4242424@example.com';
+
+-- Latency over random identifiers, half usernames and half emails. PL/pgSQL caches the plan of each
+-- static query, as the JDBC driver does with server-side prepared statements.
+CREATE TEMP TABLE samples AS
+SELECT n, 'User' || (1 + floor(random() * :users)::bigint) || CASE WHEN n % 2 = 0 THEN '@Example.com' ELSE '' END AS identifier
+  FROM generate_series(1, :samples) AS n;
+
+DO $$
+DECLARE
+    sample record;
+    lookup_key text;
+    started timestamptz;
+    legacy interval := interval '0';
+    normalized interval := interval '0';
+    total int := 0;
+BEGIN
+    FOR sample IN SELECT identifier FROM samples LOOP
+        started := clock_timestamp();
+        PERFORM * FROM users WHERE username = sample.identifier OR email = sample.identifier;
+        legacy := legacy + (clock_timestamp() - started);
+
+        started := clock_timestamp();
+        lookup_key := lower(btrim(sample.identifier));
+        IF position('@' IN lookup_key) > 0 THEN
+            PERFORM * FROM users WHERE email_normalized = lookup_key;
+        ELSE
+            PERFORM * FROM users WHERE username_normalized = lookup_key;
+        END IF;
+        normalized := normalized + (clock_timestamp() - started);
+        total := total + 1;
+    END LOOP;
+    RAISE NOTICE 'username OR email: % us/lookup', round((extract(epoch FROM legacy) * 1e6 / total)::numeric, 1);
+    RAISE NOTICE 'normalized column: % us/lookup', round((extract(epoch FROM normalized) * 1e6 / total)::numeric, 1);
+END $$;
+
+RESET search_path;
+DROP SCHEMA identifier_bench CASCADE;
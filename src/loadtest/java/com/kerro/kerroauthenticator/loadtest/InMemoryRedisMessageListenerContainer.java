@@ -0,0 +1,72 @@
+package com.kerro.kerroauthenticator.loadtest;
+
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listener container that never connects: {@link InMemoryRedisTemplate#convertAndSend} delivers
+ * messages to the registered listeners on the publishing thread.
+ */
+public class InMemoryRedisMessageListenerContainer extends RedisMessageListenerContainer {
+
+    private final Map<String, List<MessageListener>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void addMessageListener(MessageListener listener, Topic topic) {
+        listeners.computeIfAbsent(topic.getTopic(), channel -> new CopyOnWriteArrayList<>()).add(listener);
+        // la suscripción es inmediata, como la confirmaría Redis
+        if (listener instanceof SubscriptionListener subscriptionListener) {
+            subscriptionListener.onChannelSubscribed(topic.getTopic().getBytes(StandardCharsets.UTF_8), 1);
+        }
+    }
+
+    @Override
+    public void addMessageListener(MessageListener listener, Collection<? extends Topic> topics) {
+        for (Topic topic : topics) {
+            addMessageListener(listener, topic);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // sin conexión que validar
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public boolean isRunning() {
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        listeners.clear();
+    }
+
+    long publish(String channel, String body) {
+        List<MessageListener> subscribers = listeners.getOrDefault(channel, List.of());
+        DefaultMessage message = new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+        for (MessageListener listener : subscribers) {
+            listener.onMessage(message, null);
+        }
+        return subscribers.size();
+    }
+}
@@ -0,0 +1,417 @@
+package com.kerro.kerroauthenticator.loadtest;
+
+import com.kerro.kerroauthenticator.jwt.RefreshTokenService;
+import com.kerro.kerroauthenticator.jwt.SessionRegistry;
+import com.kerro.kerroauthenticator.jwt.TokenBlacklistService;
+import com.kerro.kerroauthenticator.security.RedisRateLimiter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the Redis template used by the {@code loadtest} profile.
+ * <p>
+ * Covers exactly the commands this service issues: string GET/SET/MGET with TTL, DEL, SCAN, PUBLISH,
+ * pipelined sessions, pipelined PTTL and the Lua scripts of {@link TokenBlacklistService}, {@link RefreshTokenService},
+ * {@link SessionRegistry} and {@link RedisRateLimiter}, which are recognised by identity and re-implemented here. Scripts run
+ * under one lock so they stay atomic, as in Redis. Anything else fails loudly so a new Redis call
+ * is not silently measured as free.
+ */
+public class InMemoryRedisTemplate extends RedisTemplate<String, String> {
+
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+    private final ReentrantLock scriptLock = new ReentrantLock();
+    private final InMemoryRedisMessageListenerContainer listenerContainer;
+    private final ValueOperations<String, String> valueOps;
+
+    private record Entry(Object value, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return expiresAtMillis > 0 && expiresAtMillis <= now;
+        }
+    }
+
+    public InMemoryRedisTemplate(InMemoryRedisMessageListenerContainer listenerContainer) {
+        this.listenerContainer = listenerContainer;
+        this.valueOps = valueOperations();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // sin conexión: no hay fábrica que validar
+    }
+
+    @Override
+    public ValueOperations<String, String> opsForValue() {
+        return valueOps;
+    }
+
+    @Override
+    public Boolean delete(String key) {
+        return store.remove(key) != null;
+    }
+
+    @Override
+    public Long delete(Collection<String> keys) {
+        long deleted = 0;
+        for (String key : keys) {
+            if (store.remove(key) != null) deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public Long convertAndSend(String channel, Object message) {
+        return listenerContainer.publish(channel, String.valueOf(message));
+    }
+
+    @Override
+    public Cursor<String> scan(ScanOptions options) {
+        String glob = options.getPattern() == null ? "*" : options.getPattern();
+        Pattern pattern = Pattern.compile(Pattern.quote(glob).replace("*", "\\E.*\\Q"));
+        long now = System.currentTimeMillis();
+        List<String> keys = new ArrayList<>();
+        store.forEach((key, entry) -> {
+            if (!entry.isExpired(now) && pattern.matcher(key).matches()) keys.add(key);
+        });
+        return new ListCursor(keys.iterator());
+    }
+
+    /**
+     * Only PTTL, which the revocation filter rebuild pipelines for each batch of scanned keys.
+     */
+    @Override
+    public List<Object> executePipelined(RedisCallback<?> action) {
+        List<Object> results = new ArrayList<>();
+        RedisKeyCommands keyCommands = stub(RedisKeyCommands.class, (method, args) -> {
+            if (!method.equals("pTtl/1")) return null;
+            Long ttl = pTtl(new String((byte[]) args[0], StandardCharsets.UTF_8), System.currentTimeMillis());
+            results.add(ttl);
+            return ttl;
+        });
+        RedisConnection connection = stub(RedisConnection.class,
+                (method, args) -> method.equals("keyCommands/0") ? keyCommands : null);
+        action.doInRedis(connection);
+        return results;
+    }
+
+    @Override
+    public List<Object> executePipelined(SessionCallback<?> session) {
+        // sin red no hay nada que agrupar: los comandos se ejecutan en el acto
+        session.execute(this);
+        return List.of();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        scriptLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Object result;
+            if (script == TokenBlacklistService.REVOCATION_CHECK) {
+                result = revocationCheck(keys, args, now);
+            } else if (script == RefreshTokenService.ISSUE) {
+                result = issueRefreshFamily(keys, args, now);
+            } else if (script == RefreshTokenService.ROTATE) {
+                result = rotateRefreshFamily(keys, args, now);
+            } else if (script == RefreshTokenService.REVOKE) {
+                result = revokeRefreshFamily(keys, args, now);
+            } else if (script == SessionRegistry.LIST) {
+                result = listSessions(keys, args, now);
+            } else if (script == SessionRegistry.REVOKE) {
+                result = revokeSession(keys, args, now);
+            } else if (script == SessionRegistry.REVOKE_OTHERS) {
+                result = revokeOtherSessions(keys, args, now);
+            } else if (script == RedisRateLimiter.ACQUIRE) {
+                result = acquire(keys, args, now);
+            } else {
+                throw new UnsupportedOperationException("Script not emulated by the in-memory Redis stand-in");
+            }
+            return (T) result;
+        } finally {
+            scriptLock.unlock();
+        }
+    }
+
+    private Long revocationCheck(List<String> keys, Object[] args, long now) {
+        if (get(keys.get(0), now) != null) return 1L;
+        String watermark = (String) get(keys.get(1), now);
+        if (watermark != null && Long.parseLong((String) args[0]) < Long.parseLong(watermark)) return 2L;
+        if (keys.size() > 2 && get(keys.get(2), now) != null) return 3L;
+        return 0L;
+    }
+
+    private Long issueRefreshFamily(List<String> keys, Object[] args, long now) {
+        long ttl = Long.parseLong((String) args[3]);
+        Map<String, String> family = new HashMap<>();
+        family.put("cur", (String) args[0]);
+        family.put("sub", (String) args[1]);
+        family.put("iat", (String) args[2]);
+        family.put("ua", (String) args[6]);
+        family.put("ip", (String) args[7]);
+        store.put(keys.get(0), new Entry(family, now + ttl));
+        Map<String, Long> sessions = sessionIndex(keys.get(1), now);
+        sessions.values().removeIf(expiry -> expiry <= now);
+        sessions.put((String) args[4], now + ttl);
+        store.put(keys.get(1), new Entry(sessions, now + ttl));
+        return 1L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String rotateRefreshFamily(List<String> keys, Object[] args, long now) {
+        Map<String, String> family = (Map<String, String>) get(keys.get(0), now);
+        if (family == null) return "INVALID";
+        String sessionKey = keys.get(2);
+        String previous = family.getOrDefault("prev", "");
+        if (!family.get("cur").equals(args[0])) {
+            if (!(" " + previous + " ").contains(" " + args[0] + " ")) return "INVALID";
+            store.remove(keys.get(0));
+            sessionIndex(sessionKey, now).remove((String) args[3]);
+            return "REUSED:" + family.get("sub");
+        }
+        String watermark = (String) get(keys.get(1), now);
+        if (watermark != null && Long.parseLong(family.get("iat")) < Long.parseLong(watermark)) {
+            store.remove(keys.get(0));
+            sessionIndex(sessionKey, now).remove((String) args[3]);
+            return "INVALID";
+        }
+        long expiresAt = Long.parseLong((String) args[4]) + Long.parseLong((String) args[2]);
+        String replaced = (String) args[0];
+        previous = previous.isEmpty() ? replaced : replaced + " " + previous;
+        int kept = Integer.parseInt((String) args[5]) * (replaced.length() + 1) - 1;
+        family.put("cur", (String) args[1]);
+        family.put("prev", previous.substring(0, Math.min(previous.length(), kept)));
+        store.put(keys.get(0), new Entry(family, expiresAt));
+        Map<String, Long> sessions = sessionIndex(sessionKey, now);
+        if (sessions.containsKey((String) args[3])) {
+            sessions.put((String) args[3], expiresAt);
+            store.put(sessionKey, new Entry(sessions, expiresAt));
+        }
+        return "OK:" + family.get("sub");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Long revokeRefreshFamily(List<String> keys, Object[] args, long now) {
+        Map<String, String> family = (Map<String, String>) get(keys.get(0), now);
+        if (family != null && family.get("sub").equals(args[0])) {
+            store.remove(keys.get(0));
+            sessionIndex(keys.get(1), now).remove((String) args[1]);
+            return 1L;
+        }
+        return 0L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> listSessions(List<String> keys, Object[] args, long now) {
+        Map<String, Long> sessions = sessionIndex(keys.get(0), now);
+        sessions.values().removeIf(expiry -> expiry <= now);
+        List<String> fields = new ArrayList<>();
+        sessions.entrySet().stream().sorted(Map.Entry.comparingByValue()).forEach(session -> {
+            Map<String, String> family = (Map<String, String>) get(args[1] + session.getKey(), now);
+            fields.add(session.getKey());
+            fields.add(Long.toString(session.getValue()));
+            fields.add(family == null ? "" : family.get("iat"));
+            fields.add(family == null ? "" : family.get("ua"));
+            fields.add(family == null ? "" : family.get("ip"));
+        });
+        return fields;
+    }
+
+    private Long revokeSession(List<String> keys, Object[] args, long now) {
+        if (sessionIndex(keys.get(0), now).remove((String) args[0]) == null) return 0L;
+        store.remove(keys.get(1));
+        return 1L;
+    }
+
+    private List<String> revokeOtherSessions(List<String> keys, Object[] args, long now) {
+        List<String> revoked = new ArrayList<>();
+        Iterator<String> ids = sessionIndex(keys.get(0), now).keySet().iterator();
+        while (ids.hasNext()) {
+            String id = ids.next();
+            if (!id.equals(args[0])) {
+                store.remove(args[1] + id);
+                ids.remove();
+                revoked.add(id);
+            }
+        }
+        return revoked;
+    }
+
+    /**
+     * Sorted set emulated as member to score; a missing or expired index reads as a new empty one.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> sessionIndex(String key, long now) {
+        Object sessions = get(key, now);
+        return sessions == null ? new HashMap<>() : (Map<String, Long>) sessions;
+    }
+
+    private Long acquire(List<String> keys, Object[] args, long now) {
+        long emissionInterval = Long.parseLong((String) args[0]);
+        long burst = Long.parseLong((String) args[1]);
+        String stored = (String) get(keys.get(0), now);
+        long tat = Math.max(stored == null ? now : Long.parseLong(stored), now);
+        long newTat = tat + emissionInterval;
+        long allowAt = newTat - burst;
+        if (allowAt > now) return allowAt - now;
+        store.put(keys.get(0), new Entry(Long.toString(newTat), newTat));
+        return 0L;
+    }
+
+    private Object get(String key, long now) {
+        Entry entry = store.get(key);
+        if (entry == null) return null;
+        if (entry.isExpired(now)) {
+            store.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    private long pTtl(String key, long now) {
+        Entry entry = store.get(key);
+        if (entry == null || entry.isExpired(now)) return -2;
+        return entry.expiresAtMillis() > 0 ? entry.expiresAtMillis() - now : -1;
+    }
+
+    private void set(String key, String value, long ttlMillis) {
+        store.put(key, new Entry(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0));
+    }
+
+    /**
+     * GET, SET (with or without TTL) and MGET; the interface is large and nothing else is used.
+     */
+    @SuppressWarnings("unchecked")
+    private ValueOperations<String, String> valueOperations() {
+        return (ValueOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                    int arity = args == null ? 0 : args.length;
+                    switch (method.getName() + '/' + arity) {
+                        case "get/1" -> {
+                            return get((String) args[0], System.currentTimeMillis()) instanceof String value ? value : null;
+                        }
+                        case "multiGet/1" -> {
+                            long now = System.currentTimeMillis();
+                            List<String> values = new ArrayList<>();
+                            for (Object key : (Collection<?>) args[0]) {
+                                values.add(get((String) key, now) instanceof String value ? value : null);
+                            }
+                            return values;
+                        }
+                        case "set/2" -> {
+                            set((String) args[0], (String) args[1], 0);
+                            return null;
+                        }
+                        case "set/3" -> {
+                            if (!(args[2] instanceof Duration)) {
+                                throw new UnsupportedOperationException("SETRANGE is not supported by the in-memory Redis stand-in");
+                            }
+                            set((String) args[0], (String) args[1], ((Duration) args[2]).toMillis());
+                            return null;
+                        }
+                        case "set/4" -> {
+                            set((String) args[0], (String) args[1], ((TimeUnit) args[3]).toMillis((Long) args[2]));
+                            return null;
+                        }
+                        case "getOperations/0" -> {
+                            return this;
+                        }
+                        case "toString/0" -> {
+                            return "InMemoryValueOperations";
+                        }
+                        case "hashCode/0" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "equals/1" -> {
+                            return proxy == args[0];
+                        }
+                        default -> throw new UnsupportedOperationException(
+                                method.getName() + " is not supported by the in-memory Redis stand-in");
+                    }
+                });
+    }
+
+    /**
+     * Proxy answering the methods the handler knows (it returns non-null) and failing on the rest.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, BiFunction<String, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(InMemoryRedisTemplate.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String signature = method.getName() + '/' + (args == null ? 0 : args.length);
+                    Object result = handler.apply(signature, args);
+                    if (result != null) return result;
+                    throw new UnsupportedOperationException(
+                            method.getName() + " is not supported by the in-memory Redis stand-in");
+                });
+    }
+
+    private static final class ListCursor implements Cursor<String> {
+
+        private final Iterator<String> keys;
+        private long position;
+        private boolean closed;
+
+        ListCursor(Iterator<String> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !closed && keys.hasNext();
+        }
+
+        @Override
+        public String next() {
+            position++;
+            return keys.next();
+        }
+
+        @Override
+        public CursorId getId() {
+            return CursorId.initial();
+        }
+
+        @Override
+        @Deprecated
+        public long getCursorId() {
+            return 0;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
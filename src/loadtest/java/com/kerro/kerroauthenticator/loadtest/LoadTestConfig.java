@@ -0,0 +1,24 @@
+package com.kerro.kerroauthenticator.loadtest;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Replaces {@code RedisConfig} in the {@code loadtest} profile so the service runs without a Redis server.
+ * The database side is covered by the H2 settings in {@code application-loadtest.properties}.
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    @Bean
+    public InMemoryRedisMessageListenerContainer redisMessageListenerContainer() {
+        return new InMemoryRedisMessageListenerContainer();
+    }
+
+    @Bean
+    public InMemoryRedisTemplate redisTemplate(InMemoryRedisMessageListenerContainer listenerContainer) {
+        return new InMemoryRedisTemplate(listenerContainer);
+    }
+}
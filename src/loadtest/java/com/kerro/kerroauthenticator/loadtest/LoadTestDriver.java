@@ -0,0 +1,352 @@
+package com.kerro.kerroauthenticator.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.repository.UserRepository;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Built-in load generator for the {@code loadtest} profile.
+ * <p>
+ * Replays a weighted mix of signup, login, /me and logout against the embedded server at a fixed
+ * request rate (open loop). Latency is measured from the moment each request was scheduled, not sent,
+ * so a saturated server shows up in the percentiles instead of silently lowering the rate.
+ * After a warmup the run is measured and a report with p50/p99/p999 and throughput per operation is
+ * logged and written as JSON.
+ */
+@Component
+@Profile("loadtest")
+@ConditionalOnProperty(name = "loadtest.driver.enabled", havingValue = "true")
+public class LoadTestDriver {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestDriver.class);
+    private static final String PASSWORD = "LoadTest-Password1";
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    enum Operation { SIGNUP, LOGIN, ME, LOGOUT }
+
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final ApplicationContext applicationContext;
+    private final int rate;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int seedUsers;
+    private final int maxInFlight;
+    private final Map<Operation, Integer> mix;
+    private final String reportPath;
+    private final boolean exitOnFinish;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final List<String> usernames = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<String> sessions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong signups = new AtomicLong();
+    private String baseUrl;
+
+    public LoadTestDriver(UserRepository userRepository,
+                          PasswordEncoder passwordEncoder,
+                          ObjectMapper objectMapper,
+                          ApplicationContext applicationContext,
+                          @Value("${loadtest.driver.rate}") int rate,
+                          @Value("${loadtest.driver.warmup}") Duration warmup,
+                          @Value("${loadtest.driver.duration}") Duration duration,
+                          @Value("${loadtest.driver.seed-users}") int seedUsers,
+                          @Value("${loadtest.driver.max-in-flight}") int maxInFlight,
+                          @Value("${loadtest.driver.mix}") String mix,
+                          @Value("${loadtest.driver.report}") String reportPath,
+                          @Value("${loadtest.driver.exit-on-finish}") boolean exitOnFinish) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.applicationContext = applicationContext;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.seedUsers = seedUsers;
+        this.maxInFlight = maxInFlight;
+        this.mix = parseMix(mix);
+        this.reportPath = reportPath;
+        this.exitOnFinish = exitOnFinish;
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(MAX_LATENCY_MICROS, 3));
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (applicationContext instanceof WebServerApplicationContext web) {
+            baseUrl = "http://localhost:" + web.getWebServer().getPort() + "/api/v1/auth";
+        } else {
+            log.warn("Load test driver needs the embedded web server - not starting");
+            return;
+        }
+        Thread driver = new Thread(this::run, "loadtest-driver");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    private void run() {
+        try {
+            seed();
+            log.info("Load test warmup: {} req/s for {}", rate, warmup);
+            drive(warmup);
+            for (Recorder recorder : recorders.values()) {
+                recorder.reset();
+            }
+            errors.values().forEach(counter -> counter.set(0));
+            dropped.set(0);
+
+            log.info("Load test measuring: {} req/s for {} with mix {}", rate, duration, mix);
+            long start = System.nanoTime();
+            drive(duration);
+            awaitInFlight();
+            report(System.nanoTime() - start);
+        } catch (Exception ex) {
+            log.error("Load test failed", ex);
+        } finally {
+            if (exitOnFinish) {
+                System.exit(SpringApplication.exit(applicationContext, () -> 0));
+            }
+        }
+    }
+
+    /**
+     * Inserts the seed users directly with one shared hash, so the run does not start with
+     * thousands of BCrypt operations.
+     */
+    private void seed() {
+        String hash = passwordEncoder.encode(PASSWORD);
+        List<User> users = new ArrayList<>(seedUsers);
+        for (int i = 0; i < seedUsers; i++) {
+            String username = "seed-" + i;
+            users.add(User.builder().username(username).email(username + "@loadtest.local").password(hash)
+                    .role("user").accountNonExpired(true).accountNonLocked(true)
+                    .credentialsNonExpired(true).enabled(true).build());
+            usernames.add(username);
+        }
+        userRepository.saveAll(users);
+        log.info("Load test seeded {} users", seedUsers);
+    }
+
+    private void drive(Duration period) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate);
+        long start = System.nanoTime();
+        long end = start + period.toNanos();
+        long next = start;
+        while (next < end) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            // si el planificador se retrasa se emiten todas las peticiones pendientes
+            while (next <= now && next < end) {
+                dispatch(pickOperation(), next);
+                next += intervalNanos;
+            }
+        }
+    }
+
+    private void dispatch(Operation operation, long scheduledAt) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        CompletableFuture<Boolean> call = switch (operation) {
+            case SIGNUP -> signup();
+            case LOGIN -> login();
+            case ME -> me();
+            case LOGOUT -> logout();
+        };
+        call.whenComplete((ok, ex) -> {
+            inFlight.decrementAndGet();
+            long micros = Math.min(MAX_LATENCY_MICROS, (System.nanoTime() - scheduledAt) / 1000);
+            recorders.get(operation).recordValue(micros);
+            if (ex != null || !Boolean.TRUE.equals(ok)) {
+                errors.get(operation).incrementAndGet();
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> signup() {
+        String username = "lt-" + signups.incrementAndGet() + "-" + Long.toHexString(System.nanoTime());
+        String body = json(Map.of("username", username, "email", username + "@loadtest.local", "password", PASSWORD));
+        return send(post("/signup", body, null)).thenApply(response -> {
+            boolean ok = response.statusCode() == 200;
+            if (ok) usernames.add(username);
+            return ok;
+        });
+    }
+
+    private CompletableFuture<Boolean> login() {
+        String username = usernames.get(ThreadLocalRandom.current().nextInt(usernames.size()));
+        String body = json(Map.of("username", username, "password", PASSWORD));
+        return send(post("/login", body, null)).thenApply(response -> {
+            if (response.statusCode() != 200) return false;
+            sessions.add(readToken(response.body()));
+            return true;
+        });
+    }
+
+    private CompletableFuture<Boolean> me() {
+        String token = sessions.peek();
+        if (token == null) return login();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/me"))
+                .header("Authorization", token)
+                .GET()
+                .build();
+        return send(request).thenApply(response -> response.statusCode() == 200);
+    }
+
+    private CompletableFuture<Boolean> logout() {
+        String token = sessions.poll();
+        if (token == null) return login();
+        return send(post("/logout", null, token)).thenApply(response -> response.statusCode() == 200);
+    }
+
+    private HttpRequest post(String path, String body, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .POST(body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (body != null) builder.header("Content-Type", "application/json");
+        if (token != null) builder.header("Authorization", token);
+        return builder.build();
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Operation pickOperation() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) return entry.getKey();
+        }
+        return Operation.ME;
+    }
+
+    private void awaitInFlight() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private void report(long elapsedNanos) throws IOException {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("targetRate", rate);
+        report.put("durationSeconds", seconds);
+        report.put("dropped", dropped.get());
+        Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            total.add(histogram);
+            if (histogram.getTotalCount() > 0) {
+                operations.put(operation.name().toLowerCase(), summary(histogram, errors.get(operation).get(), seconds));
+            }
+        }
+        long totalErrors = errors.values().stream().mapToLong(AtomicLong::get).sum();
+        report.put("total", summary(total, totalErrors, seconds));
+        report.put("operations", operations);
+
+        log.info("Load test finished: {}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+        Path path = Path.of(reportPath);
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+        log.info("Load test report written to {}", path.toAbsolutePath());
+    }
+
+    private static Map<String, Object> summary(Histogram histogram, long errors, double seconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", histogram.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", histogram.getTotalCount() / seconds);
+        summary.put("p50Millis", histogram.getValueAtPercentile(50) / 1000.0);
+        summary.put("p99Millis", histogram.getValueAtPercentile(99) / 1000.0);
+        summary.put("p999Millis", histogram.getValueAtPercentile(99.9) / 1000.0);
+        summary.put("maxMillis", histogram.getMaxValue() / 1000.0);
+        return summary;
+    }
+
+    private String readToken(String body) {
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            return node.path("token").asText();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unexpected login response", ex);
+        }
+    }
+
+    private String json(Map<String, String> body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Parses {@code signup:5,login:20,me:70,logout:5}.
+     */
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("loadtest.driver.mix needs at least one positive weight");
+        }
+        return weights;
+    }
+}
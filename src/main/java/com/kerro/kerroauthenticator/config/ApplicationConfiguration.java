@@ -1,6 +1,10 @@
 package com.kerro.kerroauthenticator.config;
 
-import com.kerro.kerroauthenticator.repository.UserRepository;
+import com.kerro.kerroauthenticator.security.BoundedPasswordEncoder;
+import com.kerro.kerroauthenticator.security.CalibratedBCryptPasswordEncoder;
+import com.kerro.kerroauthenticator.security.UserDetailsCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -8,27 +12,41 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
 
 @Configuration
 @EnableWebSecurity
 public class ApplicationConfiguration {
 
-    private UserRepository userRepository;
+    private UserDetailsCache userDetailsCache;
 
-    public ApplicationConfiguration(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public ApplicationConfiguration(UserDetailsCache userDetailsCache) {
+        this.userDetailsCache = userDetailsCache;
     }
 
     @Bean
     UserDetailsService userDetailsService() {
-        return userNameOrEmail -> userRepository.findByUsernameOrEmail(userNameOrEmail, userNameOrEmail)
+        return userNameOrEmail -> userDetailsCache.find(userNameOrEmail)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
     }
 
     @Bean
-    BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                    @Value("${security.password.hashing.threads}") int threads,
+                                    @Value("${security.password.hashing.queue-capacity}") int queueCapacity,
+                                    @Value("${security.password.hashing.retry-after}") Duration retryAfter,
+                                    @Value("${security.password.bcrypt.strength}") int strength,
+                                    @Value("${security.password.bcrypt.target-time}") Duration targetTime,
+                                    @Value("${security.password.bcrypt.min-strength}") int minStrength,
+                                    @Value("${security.password.bcrypt.max-strength}") int maxStrength) {
+        CalibratedBCryptPasswordEncoder bcrypt = strength > 0
+                ? new CalibratedBCryptPasswordEncoder(strength)
+                : CalibratedBCryptPasswordEncoder.calibrate(targetTime, minStrength, maxStrength);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(bcrypt, poolSize, queueCapacity,
+                Math.max(1, retryAfter.toSeconds()), meterRegistry);
     }
 
     @Bean
@@ -0,0 +1,88 @@
+package com.kerro.kerroauthenticator.config;
+
+import com.kerro.kerroauthenticator.jwt.JwtKeyRing;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+import javax.crypto.SecretKey;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+
+@Configuration
+public class JwtKeyConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyConfig.class);
+    private static final String HS256 = "HS256";
+
+    /**
+     * HS256 signs with {@code security.jwt.secret-key}. ES256 and EdDSA sign with the active entry of the
+     * keystore; the secret, if still set, is then only accepted for tokens issued before the switch.
+     */
+    @Bean
+    public JwtKeyRing jwtKeyRing(ResourceLoader resourceLoader,
+                                 @Value("${security.jwt.algorithm}") String algorithm,
+                                 @Value("${security.jwt.secret-key}") String secret,
+                                 @Value("${security.jwt.keystore.path}") String keyStorePath,
+                                 @Value("${security.jwt.keystore.password}") String keyStorePassword,
+                                 @Value("${security.jwt.keystore.type}") String keyStoreType,
+                                 @Value("${security.jwt.active-key-id}") String activeKeyId) throws Exception {
+        SecretKey hmacKey = secret == null || secret.isBlank() ? null : Keys.hmacShaKeyFor(decodeSecret(secret));
+
+        if (HS256.equals(algorithm)) {
+            if (hmacKey == null) {
+                throw new IllegalArgumentException("JWT secret is null");
+            }
+            return JwtKeyRing.hmac(hmacKey);
+        }
+
+        if (keyStorePath == null || keyStorePath.isBlank()) {
+            throw new IllegalArgumentException("security.jwt.keystore.path is required for " + algorithm);
+        }
+        char[] password = keyStorePassword.toCharArray();
+        KeyStore keyStore = KeyStore.getInstance(keyStoreType);
+        try (InputStream in = resourceLoader.getResource(keyStorePath).getInputStream()) {
+            keyStore.load(in, password);
+        }
+        JwtKeyRing keyRing = JwtKeyRing.fromKeyStore(keyStore, password, activeKeyId, algorithm, hmacKey);
+        log.info("JWT signing with {} key '{}' ({} keys published, legacy HMAC tokens {})",
+                algorithm, activeKeyId, keyRing.publicJwks().size(), hmacKey != null ? "accepted" : "rejected");
+        return keyRing;
+    }
+
+    private static byte[] decodeSecret(String secret) {
+        // Intentar Base64
+        try {
+            return Decoders.BASE64.decode(secret);
+        } catch (Exception ignored) { }
+
+        // Intentar hex
+        try {
+            return hexStringToByteArray(secret);
+        } catch (Exception ignored) { }
+
+        // Fallback: bytes UTF-8
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] hexStringToByteArray(String s) {
+        String hex = s.startsWith("0x") ? s.substring(2) : s;
+        int len = hex.length();
+        if ((len & 1) != 0) {
+            hex = "0" + hex;
+            len = hex.length();
+        }
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
+                    + Character.digit(hex.charAt(i + 1), 16));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,81 @@
+package com.kerro.kerroauthenticator.controller;
+
+import com.kerro.kerroauthenticator.dto.UserImportResultDTO;
+import com.kerro.kerroauthenticator.service.UserImportService;
+import com.kerro.kerroauthenticator.service.UserSearchService;
+import com.kerro.kerroauthenticator.utils.Constantes;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/admin/users")
+public class AdminUserController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminUserController.class);
+
+    private final UserImportService userImportService;
+    private final UserSearchService userSearchService;
+
+    public AdminUserController(UserImportService userImportService, UserSearchService userSearchService) {
+        this.userImportService = userImportService;
+        this.userSearchService = userSearchService;
+    }
+
+    /**
+     * Searches users by username (or email when {@code q} contains '@'). Pass the returned
+     * {@code nextCursor} as {@code after} to get the next page; it is absent on the last one.
+     */
+    @GetMapping
+    public ResponseEntity<Object> searchUsers(@RequestParam("q") String term,
+                                              @RequestParam(value = "after", required = false) Long after,
+                                              @RequestParam(value = "limit", required = false) Integer limit) {
+        log.debug("User search requested: {}", term);
+        try {
+            UserSearchService.Page page = userSearchService.search(term, after, limit);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("users", page.users());
+            if (page.nextCursor() != null) {
+                body.put("nextCursor", page.nextCursor());
+            }
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException ex) {
+            log.warn("User search error: {}", ex.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (Exception ex) {
+            log.error(Constantes.UNEXPECTED, ex);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(Constantes.ERROR, Constantes.UNEXPECTED));
+        }
+    }
+
+    /**
+     * Imports users from the raw request body. {@code application/x-ndjson} is read as one JSON
+     * object per line; anything else is read as CSV with a header row.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<Object> importUsers(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        boolean ndjson = contentType != null && contentType.startsWith("application/x-ndjson");
+        log.info("User import requested ({})", ndjson ? "ndjson" : "csv");
+        try {
+            UserImportResultDTO result = userImportService.importUsers(request.getInputStream(), ndjson);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException ex) {
+            log.warn("User import error: {}", ex.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (Exception ex) {
+            log.error(Constantes.UNEXPECTED, ex);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(Constantes.ERROR, Constantes.UNEXPECTED));
+        }
+    }
+}
@@ -1,18 +1,36 @@
 // java
 package com.kerro.kerroauthenticator.controller;
 
+import com.kerro.kerroauthenticator.dto.IntrospectionRequestDTO;
+import com.kerro.kerroauthenticator.dto.IntrospectionResultDTO;
 import com.kerro.kerroauthenticator.dto.LoginUserDTO;
+import com.kerro.kerroauthenticator.dto.RefreshTokenDTO;
 import com.kerro.kerroauthenticator.dto.RegisterUserDTO;
+import com.kerro.kerroauthenticator.dto.SessionDTO;
+import com.kerro.kerroauthenticator.exception.AuthenticationFailedException;
+import com.kerro.kerroauthenticator.exception.TooManyRequestsException;
 import com.kerro.kerroauthenticator.exception.user.EmailAlreadyExistException;
 import com.kerro.kerroauthenticator.exception.user.UserAlreadyExistException;
 import com.kerro.kerroauthenticator.exception.user.UserNotFoundException;
 import com.kerro.kerroauthenticator.jwt.JwtService;
+import com.kerro.kerroauthenticator.jwt.RefreshTokenService;
+import com.kerro.kerroauthenticator.jwt.SessionRegistry;
 import com.kerro.kerroauthenticator.jwt.TokenBlacklistService;
+import com.kerro.kerroauthenticator.jwt.TokenIntrospectionService;
+import com.kerro.kerroauthenticator.jwt.VerifiedToken;
 import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.security.AuthenticatedUser;
+import com.kerro.kerroauthenticator.security.LoginThrottle;
 import com.kerro.kerroauthenticator.service.AuthenticationService;
 import com.kerro.kerroauthenticator.utils.Constantes;
+import com.kerro.kerroauthenticator.utils.LogSampler;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -20,6 +38,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -30,19 +50,36 @@ public class AuthenticationController {
     private final JwtService jwtService;
     private final AuthenticationService authenticationService;
     private final TokenBlacklistService tokenBlacklistService;
+    private final LoginThrottle loginThrottle;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenIntrospectionService tokenIntrospectionService;
+    private final SessionRegistry sessionRegistry;
     private static final Logger log = LoggerFactory.getLogger(AuthenticationController.class);
+    private static final LogSampler THROTTLED_LOG = new LogSampler(20, Duration.ofSeconds(10));
+    // sin no-store, para que el navegador guarde la respuesta y la revalide con If-None-Match
+    private static final CacheControl PROFILE_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
 
     public AuthenticationController(JwtService jwtService,
                                     AuthenticationService authenticationService,
-                                    TokenBlacklistService tokenBlacklistService) {
+                                    TokenBlacklistService tokenBlacklistService,
+                                    LoginThrottle loginThrottle,
+                                    RefreshTokenService refreshTokenService,
+                                    TokenIntrospectionService tokenIntrospectionService,
+                                    SessionRegistry sessionRegistry) {
         this.jwtService = jwtService;
         this.authenticationService = authenticationService;
         this.tokenBlacklistService = tokenBlacklistService;
+        this.loginThrottle = loginThrottle;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenIntrospectionService = tokenIntrospectionService;
+        this.sessionRegistry = sessionRegistry;
     }
 
     @PostMapping("/signup")
-    public ResponseEntity<Map<String, String>> register(@Validated @RequestBody RegisterUserDTO registerUserDto) {
+    public ResponseEntity<Map<String, String>> register(@Validated @RequestBody RegisterUserDTO registerUserDto,
+                                                        HttpServletRequest request) {
         try {
+            loginThrottle.checkSignup(request.getRemoteAddr());
             authenticationService.signup(registerUserDto);
             return ResponseEntity.ok(Map.of(Constantes.MESSAGE, "Register successfully"));
         } catch (IllegalArgumentException ex) {
@@ -51,6 +88,9 @@ public class AuthenticationController {
         } catch (UserAlreadyExistException | EmailAlreadyExistException ex) {
             log.warn("Registration error: {}", ex.getMessage());
             return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (TooManyRequestsException ex) {
+            logThrottled("Registration", ex);
+            return tooManyRequests(ex, Map.of(Constantes.ERROR, ex.getMessage()));
         } catch (Exception ex) {
             log.error(Constantes.UNEXPECTED, ex);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of( Constantes.ERROR, Constantes.UNEXPECTED));
@@ -58,21 +98,63 @@ public class AuthenticationController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<Map<String, Object>> authenticate(@RequestBody LoginUserDTO loginUserDto) {
+    public ResponseEntity<Map<String, Object>> authenticate(@RequestBody LoginUserDTO loginUserDto,
+                                                            HttpServletRequest request) {
         try {
+            loginThrottle.checkLogin(request.getRemoteAddr(), loginUserDto.getUsername());
             User authenticatedUser = authenticationService.authenticate(loginUserDto);
-            String jwtToken = jwtService.generateToken(authenticatedUser); // ahora existe overload sin TTL
+            // cada login abre una sesión: la familia del refresh token, cuyo id viaja en el access token como sid
+            RefreshTokenService.Issued session = refreshTokenService.issue(authenticatedUser.getUsername(),
+                    request.getHeader(HttpHeaders.USER_AGENT), request.getRemoteAddr());
+            String jwtToken = jwtService.generateToken(authenticatedUser, session.sessionId());
 
             return ResponseEntity.ok(Map.of(
                     "message", "Login successful",
-                    "token", "Bearer " + jwtToken
+                    "token", "Bearer " + jwtToken,
+                    "refreshToken", session.refreshToken()
             ));
         } catch (IllegalArgumentException ex) {
             log.error("Authentication error: {}", ex.getMessage());
             return ResponseEntity.badRequest().body(Map.of(Constantes.ERROR, ex.getMessage()));
         } catch (UserNotFoundException ex) {
-            log.warn("User not found: {}", ex.getMessage());
+            // AuthenticationService ya lo registra con muestreo
+            log.debug("User not found: {}", ex.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (AuthenticationFailedException ex) {
+            log.debug("Login rejected: {}", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (TooManyRequestsException ex) {
+            logThrottled("Login", ex);
+            return tooManyRequests(ex, Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (Exception ex) {
+            log.error(Constantes.UNEXPECTED, ex);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(Constantes.ERROR, Constantes.UNEXPECTED));
+        }
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and the next refresh token of the same family.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refresh(@RequestBody RefreshTokenDTO refreshTokenDto,
+                                                       HttpServletRequest request) {
+        try {
+            loginThrottle.checkRefresh(request.getRemoteAddr());
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshTokenDto.getRefreshToken());
+            AuthenticatedUser user = authenticationService.getRefreshableUser(rotation.subject());
+            String jwtToken = jwtService.generateToken(user, rotation.sessionId());
+
+            return ResponseEntity.ok(Map.of(
+                    "message", "Token refreshed",
+                    "token", "Bearer " + jwtToken,
+                    "refreshToken", rotation.refreshToken()
+            ));
+        } catch (AuthenticationFailedException ex) {
+            log.warn("Refresh rejected: {}", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (TooManyRequestsException ex) {
+            logThrottled("Refresh", ex);
+            return tooManyRequests(ex, Map.of(Constantes.ERROR, ex.getMessage()));
         } catch (Exception ex) {
             log.error(Constantes.UNEXPECTED, ex);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(Constantes.ERROR, Constantes.UNEXPECTED));
@@ -80,8 +162,10 @@ public class AuthenticationController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<Map<String, String>> logout(@RequestHeader(value = "Authorization", required = false) String authorizationHeader) {
-        log.info("Logout request received");
+    public ResponseEntity<Map<String, String>> logout(@RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+                                                      @RequestAttribute(name = VerifiedToken.REQUEST_ATTRIBUTE, required = false) VerifiedToken verifiedToken,
+                                                      @RequestBody(required = false) RefreshTokenDTO refreshTokenDto) {
+        log.debug("Logout request received");
 
         if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
             return ResponseEntity.badRequest().body(Map.of("message", "No Authorization Bearer token provided"));
@@ -89,59 +173,144 @@ public class AuthenticationController {
 
         String token = authorizationHeader.substring(7).trim();
 
-        if (tokenBlacklistService.isBlacklisted(token)) {
-            log.warn("Token already blacklisted");
-            return ResponseEntity.ok(Map.of("message", "Token already invalidated"));
+        VerifiedToken verified;
+        try {
+            verified = verifiedToken != null ? verifiedToken : jwtService.verify(token);
+        } catch (JwtException ex) {
+            // el filtro ya rechaza un token que no verifica: no queda nada que revocar
+            log.debug("Logout with an unverifiable token: {}", ex.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(Constantes.ERROR, "Invalid or expired token"));
         }
 
         try {
-            long expiryEpochMillis = jwtService.getExpirationEpochMillis(token);
-            tokenBlacklistService.blacklistToken(token, expiryEpochMillis);
-            log.info("Token blacklisted until {}", expiryEpochMillis);
+            // antes de revocar la sesión: su clave de revocación también cubre este token
+            if (tokenBlacklistService.isBlacklisted(verified)) {
+                log.warn("Token already blacklisted");
+                return ResponseEntity.ok(Map.of("message", "Token already invalidated"));
+            }
+            if (verified.sessionId() != null) {
+                // cierra la sesión entera: el refresh token y los demás access tokens emitidos para ella
+                sessionRegistry.revoke(verified.subject(), verified.sessionId());
+            } else if (refreshTokenDto != null) {
+                refreshTokenService.revoke(refreshTokenDto.getRefreshToken(), verified.subject());
+            }
+            tokenBlacklistService.blacklistToken(token, verified);
+            log.debug("Token blacklisted until {}", verified.expiresAtMillis());
             return ResponseEntity.ok(Map.of("message", "Logout successful"));
         } catch (Exception ex) {
-            log.error("Error during logout token invalidation", ex);
-            long defaultTtlMillis = System.currentTimeMillis() + 1000L * 60 * 60; // 1 hora por defecto
-            tokenBlacklistService.blacklistToken(token, defaultTtlMillis);
-            return ResponseEntity.ok(Map.of("message", "Logout processed (fallback TTL)"));
+            log.error("Error ending the session on logout", ex);
+            // el access token se revoca igualmente: con Redis caído queda pendiente tras el circuit breaker
+            tokenBlacklistService.blacklistToken(token, verified);
+            return ResponseEntity.ok(Map.of("message", "Logout processed (access token revoked, session still active)"));
+        }
+    }
+
+    @PostMapping("/logout-all")
+    public ResponseEntity<Map<String, String>> logoutAll(@AuthenticationPrincipal UserDetails userDetails) {
+        log.info("Logout from all sessions requested by: {}", userDetails.getUsername());
+        tokenBlacklistService.revokeAllIssuedBefore(userDetails.getUsername(), System.currentTimeMillis());
+        sessionRegistry.revokeOthers(userDetails.getUsername(), null);
+        return ResponseEntity.ok(Map.of(Constantes.MESSAGE, "All sessions invalidated"));
+    }
+
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> listSessions(@AuthenticationPrincipal UserDetails userDetails,
+                                                            @RequestAttribute(name = VerifiedToken.REQUEST_ATTRIBUTE, required = false) VerifiedToken verifiedToken) {
+        log.debug("Sessions requested by: {}", userDetails.getUsername());
+        String currentSessionId = verifiedToken != null ? verifiedToken.sessionId() : null;
+        List<SessionDTO> sessions = sessionRegistry.list(userDetails.getUsername(), currentSessionId);
+        return ResponseEntity.ok(Map.of("sessions", sessions));
+    }
+
+    @DeleteMapping("/sessions/{id}")
+    public ResponseEntity<Map<String, String>> revokeSession(@AuthenticationPrincipal UserDetails userDetails,
+                                                             @PathVariable("id") String sessionId) {
+        if (!sessionRegistry.revoke(userDetails.getUsername(), sessionId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(Constantes.ERROR, "Session not found"));
+        }
+        return ResponseEntity.ok(Map.of(Constantes.MESSAGE, "Session revoked"));
+    }
+
+    /**
+     * Ends every session of the user except the one making the request.
+     */
+    @DeleteMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> revokeOtherSessions(@AuthenticationPrincipal UserDetails userDetails,
+                                                                   @RequestAttribute(name = VerifiedToken.REQUEST_ATTRIBUTE, required = false) VerifiedToken verifiedToken) {
+        String currentSessionId = verifiedToken != null ? verifiedToken.sessionId() : null;
+        int revoked = sessionRegistry.revokeOthers(userDetails.getUsername(), currentSessionId);
+        log.info("{} other sessions revoked by: {}", revoked, userDetails.getUsername());
+        return ResponseEntity.ok(Map.of(Constantes.MESSAGE, "Other sessions revoked", "revoked", revoked));
+    }
+
+    /**
+     * Validates a batch of tokens for gateways; results are returned in request order.
+     */
+    @PostMapping("/introspect")
+    public ResponseEntity<Map<String, Object>> introspect(@RequestBody IntrospectionRequestDTO introspectionRequestDto) {
+        try {
+            List<IntrospectionResultDTO> results = tokenIntrospectionService.introspect(introspectionRequestDto.getTokens());
+            return ResponseEntity.ok(Map.of("results", results));
+        } catch (IllegalArgumentException ex) {
+            log.warn("Introspection error: {}", ex.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(Constantes.ERROR, ex.getMessage()));
+        } catch (Exception ex) {
+            log.error(Constantes.UNEXPECTED, ex);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(Constantes.ERROR, Constantes.UNEXPECTED));
         }
     }
 
+    /**
+     * Answered from the authenticated principal; the strong ETag lets polling clients revalidate with
+     * {@code If-None-Match} and get a 304 without a body.
+     */
     @GetMapping("/me")
-    public ResponseEntity<Map<String, String>> getUserRole(@AuthenticationPrincipal UserDetails userDetails) {
-        log.info("Me request Received: {}", userDetails.getUsername());
-        if (userDetails.getUsername() == null) {
+    public ResponseEntity<Map<String, String>> getUserRole(@AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null || user.getUsername() == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        try {
-            log.info("Obtaining unsername: {}", userDetails.getUsername());
-            User user = authenticationService.getUserByUsernameOrEmail(userDetails.getUsername());
-            Map<String, String> role = Map.of("role", user.getRole());
-            log.info("User role: {} es: {}", user.getUsername(), user.getRole());
-            log.info("Me: Successful");
-            return ResponseEntity.ok(role);
-        } catch (Exception ex){
+        log.debug("Me request Received: {}", user.getUsername());
+        if (user.getRole() == null) {
             throw new UserNotFoundException(null);
         }
+        return ResponseEntity.ok()
+                .eTag(etag("me", user.getRole()))
+                .cacheControl(PROFILE_CACHE_CONTROL)
+                .body(Map.of("role", user.getRole()));
     }
 
     @GetMapping("/info")
-    public ResponseEntity<Map<String, Object>> getUserInfo(@AuthenticationPrincipal UserDetails userDetails) {
-        log.info("Info request received for user: {}", userDetails.getUsername());
-
-        if (userDetails.getUsername() == null) {
+    public ResponseEntity<Map<String, Object>> getUserInfo(@AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null || user.getUsername() == null) {
             log.error("UserDetails is null or username is missing");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        log.debug("Info request received for user: {}", user.getUsername());
 
-        User user = authenticationService.getUserByUsernameOrEmail(userDetails.getUsername());
+        return ResponseEntity.ok()
+                .eTag(etag("info", user.getId() + ":" + user.getUsername()))
+                .cacheControl(PROFILE_CACHE_CONTROL)
+                .body(Map.of(
+                        "id", user.getId(),
+                        "username", user.getUsername()
+                ));
+    }
 
-        Map<String, Object> userInfo = Map.of(
-                "id", user.getId(),
-                "username", user.getUsername()
-        );
+    // Spring compara If-None-Match con este valor y responde 304 sin serializar el cuerpo
+    private static String etag(String resource, String representation) {
+        return '"' + TokenDigest.shortSha256(resource + ':' + representation) + '"';
+    }
+
+    private static void logThrottled(String operation, TooManyRequestsException ex) {
+        long suppressed = THROTTLED_LOG.tryAcquire();
+        if (suppressed >= 0) {
+            log.warn("{} rejected: {} (suppressed={})", operation, ex.getMessage(), suppressed);
+        }
+    }
 
-        log.info("User info retrieved successfully for username: {}", user.getUsername());
-        return ResponseEntity.ok(userInfo);
+    private static <T> ResponseEntity<T> tooManyRequests(TooManyRequestsException ex, T body) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(body);
     }
 }
\ No newline at end of file
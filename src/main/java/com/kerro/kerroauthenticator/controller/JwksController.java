@@ -0,0 +1,47 @@
+package com.kerro.kerroauthenticator.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kerro.kerroauthenticator.jwt.JwtKeyRing;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Publishes the public signing keys so other services can verify tokens without calling back.
+ * The document only changes on restart, so it is rendered once and served with a strong ETag.
+ */
+@RestController
+public class JwksController {
+
+    private final String body;
+    private final String etag;
+    private final CacheControl cacheControl;
+
+    public JwksController(JwtKeyRing keyRing,
+                          ObjectMapper objectMapper,
+                          @Value("${security.jwt.jwks.max-age}") Duration maxAge) throws JsonProcessingException {
+        this.body = objectMapper.writeValueAsString(Map.of("keys", keyRing.publicJwks()));
+        this.etag = '"' + TokenDigest.shortSha256(body) + '"';
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> jwks(WebRequest request) {
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(body);
+    }
+}
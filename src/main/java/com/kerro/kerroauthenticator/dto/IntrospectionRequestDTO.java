@@ -0,0 +1,23 @@
+package com.kerro.kerroauthenticator.dto;
+
+import java.util.List;
+
+public class IntrospectionRequestDTO {
+
+    private List<String> tokens;
+
+    public IntrospectionRequestDTO() {
+    }
+
+    public IntrospectionRequestDTO(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(List<String> tokens) {
+        this.tokens = tokens;
+    }
+}
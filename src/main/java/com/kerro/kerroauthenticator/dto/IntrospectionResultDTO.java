@@ -0,0 +1,56 @@
+package com.kerro.kerroauthenticator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.kerro.kerroauthenticator.jwt.VerifiedToken;
+
+/**
+ * Per-token result following the field names of RFC 7662; inactive tokens only carry {@code active}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntrospectionResultDTO {
+
+    private static final IntrospectionResultDTO INACTIVE = new IntrospectionResultDTO(false, null, null, null, null);
+
+    private final boolean active;
+    private final String sub;
+    private final String role;
+    private final Long iat;
+    private final Long exp;
+
+    public IntrospectionResultDTO(boolean active, String sub, String role, Long iat, Long exp) {
+        this.active = active;
+        this.sub = sub;
+        this.role = role;
+        this.iat = iat;
+        this.exp = exp;
+    }
+
+    public static IntrospectionResultDTO active(VerifiedToken token) {
+        return new IntrospectionResultDTO(true, token.subject(), token.role(),
+                token.issuedAtMillis() / 1000, token.expiresAtMillis() / 1000);
+    }
+
+    public static IntrospectionResultDTO inactive() {
+        return INACTIVE;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public String getSub() {
+        return sub;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public Long getIat() {
+        return iat;
+    }
+
+    public Long getExp() {
+        return exp;
+    }
+}
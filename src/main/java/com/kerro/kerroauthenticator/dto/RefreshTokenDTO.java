@@ -0,0 +1,21 @@
+package com.kerro.kerroauthenticator.dto;
+
+public class RefreshTokenDTO {
+
+    private String refreshToken;
+
+    public RefreshTokenDTO() {
+    }
+
+    public RefreshTokenDTO(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
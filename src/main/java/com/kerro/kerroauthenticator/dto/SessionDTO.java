@@ -0,0 +1,50 @@
+package com.kerro.kerroauthenticator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One active session of the user, as listed by {@code GET /api/v1/auth/sessions}. Times are epoch millis.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SessionDTO {
+
+    private final String id;
+    private final Long createdAt;
+    private final long expiresAt;
+    private final String userAgent;
+    private final String ipAddress;
+    private final boolean current;
+
+    public SessionDTO(String id, Long createdAt, long expiresAt, String userAgent, String ipAddress, boolean current) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.userAgent = userAgent;
+        this.ipAddress = ipAddress;
+        this.current = current;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public boolean isCurrent() {
+        return current;
+    }
+}
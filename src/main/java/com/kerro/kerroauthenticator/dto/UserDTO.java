@@ -1,5 +1,9 @@
 package com.kerro.kerroauthenticator.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// password solo viaja en las peticiones; en las búsquedas queda null y no se serializa
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class UserDTO {
 
     private Long id;
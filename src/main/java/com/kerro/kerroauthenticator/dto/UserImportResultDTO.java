@@ -0,0 +1,53 @@
+package com.kerro.kerroauthenticator.dto;
+
+import java.util.List;
+
+public class UserImportResultDTO {
+
+    private long imported;
+    private long conflicts;
+    private long rejected;
+    private long elapsedMillis;
+    private double usersPerSecond;
+    private List<RowError> errors;
+
+    public UserImportResultDTO() {
+    }
+
+    public UserImportResultDTO(long imported, long conflicts, long rejected, long elapsedMillis,
+                               double usersPerSecond, List<RowError> errors) {
+        this.imported = imported;
+        this.conflicts = conflicts;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+        this.usersPerSecond = usersPerSecond;
+        this.errors = errors;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getUsersPerSecond() {
+        return usersPerSecond;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public record RowError(long line, String username, String reason) {
+    }
+}
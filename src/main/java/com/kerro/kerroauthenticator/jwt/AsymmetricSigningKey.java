@@ -0,0 +1,148 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.EdECPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ES256 (P-256) or EdDSA (Ed25519) key. Entries without a private key only verify tokens,
+ * which is how retired keys stay in the ring until the tokens they signed have expired.
+ */
+final class AsymmetricSigningKey implements SigningKey {
+
+    static final String ES256 = "ES256";
+    static final String EDDSA = "EdDSA";
+
+    private static final Base64.Encoder B64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final int P256_COORDINATE_LENGTH = 32;
+    private static final int ED25519_KEY_LENGTH = 32;
+
+    private final String keyId;
+    private final String algorithm;
+    private final String jcaName;
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+    private final PrimitivePool<Signature> signers;
+    private final PrimitivePool<Signature> verifiers;
+
+    AsymmetricSigningKey(String keyId, PrivateKey privateKey, PublicKey publicKey) {
+        this.keyId = keyId;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        if (publicKey instanceof ECPublicKey ec && ec.getParams().getCurve().getField().getFieldSize() == 256) {
+            this.algorithm = ES256;
+            // JWS usa la firma r||s de longitud fija, no DER
+            this.jcaName = "SHA256withECDSAinP1363Format";
+        } else if (publicKey instanceof EdECPublicKey) {
+            this.algorithm = EDDSA;
+            this.jcaName = "Ed25519";
+        } else {
+            throw new IllegalArgumentException("Key " + keyId + " is neither a P-256 nor an Ed25519 key");
+        }
+        this.signers = new PrimitivePool<>(this::newSigner);
+        this.verifiers = new PrimitivePool<>(this::newVerifier);
+    }
+
+    @Override
+    public String keyId() {
+        return keyId;
+    }
+
+    @Override
+    public String algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public boolean canSign() {
+        return privateKey != null;
+    }
+
+    @Override
+    public byte[] sign(byte[] data) {
+        if (privateKey == null) {
+            throw new IllegalStateException("Key " + keyId + " is verification only");
+        }
+        try {
+            Signature signer = signers.acquire();
+            signer.update(data);
+            byte[] signature = signer.sign();
+            signers.release(signer);
+            return signature;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to sign with key " + keyId, ex);
+        }
+    }
+
+    @Override
+    public boolean verify(byte[] data, int length, byte[] signature) {
+        try {
+            Signature verifier = verifiers.acquire();
+            verifier.update(data, 0, length);
+            boolean valid = verifier.verify(signature);
+            verifiers.release(verifier);
+            return valid;
+        } catch (GeneralSecurityException ex) {
+            // firma con longitud o formato inválido: la instancia se descarta
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, Object> publicJwk() {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        if (publicKey instanceof ECPublicKey ec) {
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", B64_ENCODER.encodeToString(unsigned(ec.getW().getAffineX())));
+            jwk.put("y", B64_ENCODER.encodeToString(unsigned(ec.getW().getAffineY())));
+        } else {
+            byte[] encoded = publicKey.getEncoded();
+            jwk.put("kty", "OKP");
+            jwk.put("crv", "Ed25519");
+            // la codificación X.509 termina con los 32 bytes de la clave pública
+            jwk.put("x", B64_ENCODER.encodeToString(
+                    Arrays.copyOfRange(encoded, encoded.length - ED25519_KEY_LENGTH, encoded.length)));
+        }
+        jwk.put("kid", keyId);
+        jwk.put("alg", algorithm);
+        jwk.put("use", "sig");
+        return jwk;
+    }
+
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] out = new byte[P256_COORDINATE_LENGTH];
+        int length = Math.min(bytes.length, P256_COORDINATE_LENGTH);
+        System.arraycopy(bytes, bytes.length - length, out, P256_COORDINATE_LENGTH - length, length);
+        return out;
+    }
+
+    private Signature newSigner() {
+        try {
+            Signature signature = Signature.getInstance(jcaName);
+            signature.initSign(privateKey);
+            return signature;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to initialise " + jcaName, ex);
+        }
+    }
+
+    private Signature newVerifier() {
+        try {
+            Signature signature = Signature.getInstance(jcaName);
+            signature.initVerify(publicKey);
+            return signature;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to initialise " + jcaName, ex);
+        }
+    }
+}
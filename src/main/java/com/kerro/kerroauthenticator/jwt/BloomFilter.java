@@ -0,0 +1,56 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over token digests. Bits are only ever set, so concurrent
+ * {@link #put} and {@link #mightContain} calls never block each other.
+ */
+class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int numHashes;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        this.words = new AtomicLongArray((int) ((m + 63) / 64));
+        this.numBits = words.length() * 64L;
+        this.numHashes = Math.max(1, (int) Math.round((double) m / n * LN2));
+    }
+
+    void put(String digest) {
+        long h1 = hash(digest, 0xcbf29ce484222325L);
+        long h2 = hash(digest, 0x84222325cbf29ce4L);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            long mask = 1L << bit;
+            words.getAndAccumulate((int) (bit >>> 6), mask, (current, m) -> current | m);
+        }
+    }
+
+    boolean mightContain(String digest) {
+        long h1 = hash(digest, 0xcbf29ce484222325L);
+        long h2 = hash(digest, 0x84222325cbf29ce4L);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a de 64 bits; la entrada ya es un SHA-256, basta con repartir bien los bits
+    private static long hash(String digest, long seed) {
+        long h = seed;
+        for (int i = 0; i < digest.length(); i++) {
+            h ^= digest.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h ^ (h >>> 29);
+    }
+}
@@ -2,6 +2,7 @@ package com.kerro.kerroauthenticator.jwt;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import com.kerro.kerroauthenticator.utils.LogSampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.AuthenticationException;
@@ -9,23 +10,25 @@ import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Duration;
 
 @Component
 public class CustomAuthenticationEntryPoint implements AuthenticationEntryPoint {
 
 
     private static final Logger log = LoggerFactory.getLogger(CustomAuthenticationEntryPoint.class);
+    // un escaneo o un cliente con un token caducado no debe escribir una línea por petición
+    private static final LogSampler UNAUTHORIZED_LOG = new LogSampler(20, Duration.ofSeconds(10));
 
     @Override
     public void commence(HttpServletRequest request, HttpServletResponse response,
                          AuthenticationException authException) throws IOException {
-        String path = request.getRequestURI();
-        String method = request.getMethod();
-        String remoteAddr = request.getRemoteAddr();
-        String authHeader = request.getHeader("Authorization");
-
-        log.warn("Unauthorized request: method={} path={} remoteAddr={} authHeaderPresent={} reason={}",
-                method, path, remoteAddr, authHeader != null, safeMessage(authException));
+        long suppressed = UNAUTHORIZED_LOG.tryAcquire();
+        if (suppressed >= 0) {
+            log.warn("Unauthorized request: method={} path={} remoteAddr={} authHeaderPresent={} reason={} suppressed={}",
+                    request.getMethod(), request.getRequestURI(), request.getRemoteAddr(),
+                    request.getHeader("Authorization") != null, safeMessage(authException), suppressed);
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("Authentication exception stacktrace: ", authException);
@@ -0,0 +1,74 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Shared-secret key (HS256/384/512). Never published in the JWKS document.
+ */
+final class HmacSigningKey implements SigningKey {
+
+    private final String keyId;
+    private final SecretKey key;
+    private final SignatureAlgorithm algorithm;
+    private final PrimitivePool<Mac> macs;
+
+    HmacSigningKey(String keyId, SecretKey key) {
+        this.keyId = keyId;
+        this.key = key;
+        this.algorithm = SignatureAlgorithm.forSigningKey(key);
+        this.macs = new PrimitivePool<>(this::newMac);
+    }
+
+    @Override
+    public String keyId() {
+        return keyId;
+    }
+
+    @Override
+    public String algorithm() {
+        return algorithm.getValue();
+    }
+
+    @Override
+    public boolean canSign() {
+        return true;
+    }
+
+    @Override
+    public byte[] sign(byte[] data) {
+        Mac mac = macs.acquire();
+        byte[] signature = mac.doFinal(data);
+        macs.release(mac);
+        return signature;
+    }
+
+    @Override
+    public boolean verify(byte[] data, int length, byte[] signature) {
+        Mac mac = macs.acquire();
+        mac.update(data, 0, length);
+        byte[] expected = mac.doFinal();
+        macs.release(mac);
+        return MessageDigest.isEqual(expected, signature);
+    }
+
+    @Override
+    public Map<String, Object> publicJwk() {
+        return null;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(algorithm.getJcaName());
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to initialise " + algorithm.getJcaName(), ex);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 // java
 package com.kerro.kerroauthenticator.jwt;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,26 +17,69 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import com.kerro.kerroauthenticator.security.CustomUserDetailsService;
+import com.kerro.kerroauthenticator.security.TokenPrincipal;
+import com.kerro.kerroauthenticator.utils.LogSampler;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+    private static final LogSampler BLACKLISTED_LOG = new LogSampler(20, Duration.ofSeconds(10));
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
     private final TokenBlacklistService tokenBlacklistService;
+    private final RejectedTokenCache rejectedTokenCache;
+    private final boolean claimsOnly;
+    private final long claimsOnlyMaxAgeMillis;
+    private final Timer rejectedCacheStage;
+    private final Timer verifyStage;
+    private final Timer revocationStage;
+    private final Timer principalStage;
+    private final Timer validOutcome;
+    private final Map<TokenRejection, Timer> rejectedOutcomes = new EnumMap<>(TokenRejection.class);
 
     public JwtAuthenticationFilter(JwtService jwtService,
                                    CustomUserDetailsService userDetailsService,
-                                   TokenBlacklistService tokenBlacklistService) {
+                                   TokenBlacklistService tokenBlacklistService,
+                                   RejectedTokenCache rejectedTokenCache,
+                                   @Value("${security.jwt.claims-only.enabled}") boolean claimsOnly,
+                                   @Value("${security.jwt.claims-only.max-token-age}") Duration claimsOnlyMaxAge,
+                                   MeterRegistry meterRegistry) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
         this.tokenBlacklistService = tokenBlacklistService;
+        this.rejectedTokenCache = rejectedTokenCache;
+        this.claimsOnly = claimsOnly;
+        this.claimsOnlyMaxAgeMillis = claimsOnlyMaxAge.toMillis();
+        this.rejectedCacheStage = stageTimer(meterRegistry, "rejected-cache");
+        this.verifyStage = stageTimer(meterRegistry, "verify");
+        this.revocationStage = stageTimer(meterRegistry, "revocation");
+        this.principalStage = stageTimer(meterRegistry, "principal");
+        // tiempo total del filtro sin contar el resto de la cadena, por resultado del token
+        this.validOutcome = Timer.builder("kerro.jwt.filter").tag("outcome", "valid").register(meterRegistry);
+        for (TokenRejection rejection : TokenRejection.values()) {
+            rejectedOutcomes.put(rejection,
+                    Timer.builder("kerro.jwt.filter").tag("outcome", rejection.tag()).register(meterRegistry));
+        }
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("kerro.jwt.filter.stage").tag("stage", stage).register(meterRegistry);
     }
 
+    /**
+     * Validates the bearer token in stages ordered by cost, so garbage and repeated bad tokens
+     * are refused before any HMAC or Redis work:
+     * structural pre-check, negative cache, signature and expiry, and only then the revocation lookup.
+     */
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -45,28 +91,99 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             token = header.substring(7).trim();
         }
 
-        if (token != null && tokenBlacklistService.isBlacklisted(token)) {
-            log.info("Request with blacklisted token - rejecting");
+        if (token == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (!JwtCodec.isWellFormed(token)) {
+            log.debug("Malformed bearer token - ignoring");
+            record(rejectedOutcomes.get(TokenRejection.MALFORMED), start);
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String digest = TokenDigest.sha256(token);
+        long stageStart = System.nanoTime();
+        TokenRejection rejection = rejectedTokenCache.get(digest);
+        record(rejectedCacheStage, stageStart);
+        VerifiedToken verified = null;
+
+        if (rejection == null) {
+            stageStart = System.nanoTime();
+            try {
+                verified = jwtService.verify(token, digest);
+            } catch (Exception ex) {
+                log.debug("JWT validation error: {}", ex.getMessage());
+                rejection = TokenRejection.of(ex);
+                rejectedTokenCache.put(digest, rejection);
+            }
+            record(verifyStage, stageStart);
+        }
+
+        if (verified != null) {
+            stageStart = System.nanoTime();
+            boolean blacklisted = tokenBlacklistService.isBlacklisted(verified);
+            record(revocationStage, stageStart);
+            if (blacklisted) {
+                rejection = TokenRejection.REVOKED;
+                rejectedTokenCache.put(digest, rejection);
+            }
+        }
+
+        if (rejection == TokenRejection.REVOKED) {
+            long suppressed = BLACKLISTED_LOG.tryAcquire();
+            if (suppressed >= 0) {
+                log.info("Request with blacklisted token - rejecting (suppressed={})", suppressed);
+            }
+            record(rejectedOutcomes.get(rejection), start);
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token invalidated");
             return;
         }
 
+        if (verified != null) {
+            stageStart = System.nanoTime();
+            authenticate(request, verified);
+            record(principalStage, stageStart);
+            record(validOutcome, start);
+        } else {
+            record(rejectedOutcomes.get(rejection), start);
+        }
+        // si el token fue rechazado, la cadena de filtros maneje la respuesta (o CustomAuthenticationEntryPoint)
+        filterChain.doFilter(request, response);
+    }
+
+    private static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void authenticate(HttpServletRequest request, VerifiedToken verified) {
+        request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verified);
+        String username = verified.subject();
+        if (username == null || SecurityContextHolder.getContext().getAuthentication() != null) {
+            return;
+        }
         try {
-            if (token != null && jwtService.isTokenValid(token)) {
-                String username = jwtService.extractUsername(token);
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
-            }
+            UserDetails userDetails = resolvePrincipal(verified);
+            UsernamePasswordAuthenticationToken authToken =
+                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         } catch (Exception ex) {
-            log.debug("JWT validation error: {}", ex.getMessage());
-            // dejar que la cadena de filtros maneje la respuesta (o CustomAuthenticationEntryPoint)
+            log.debug("Could not load principal for token: {}", ex.getMessage());
         }
+    }
 
-        filterChain.doFilter(request, response);
+    /**
+     * In claims-only mode a token younger than the configured max age is trusted as is;
+     * older tokens, or tokens issued without principal claims, fall back to the database.
+     */
+    private UserDetails resolvePrincipal(VerifiedToken verified) {
+        if (claimsOnly && verified.hasPrincipalClaims()
+                && System.currentTimeMillis() - verified.issuedAtMillis() <= claimsOnlyMaxAgeMillis) {
+            return new TokenPrincipal(verified);
+        }
+        return userDetailsService.loadUserByUsername(verified.subject());
     }
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Compact JWS codec for the tokens issued by this service.
+ * <p>
+ * The header segment of the active key is encoded once, and header and payload are read with a streaming
+ * parser from a shared {@link JsonFactory}, so verifying a token is a single pass over its bytes without
+ * building a {@code JwtParser}. With an HMAC key it produces and accepts the same tokens as
+ * {@code Jwts.builder().signWith(key)}.
+ * <p>
+ * The {@code Mac} / {@code Signature} instances are not kept per thread: each {@link SigningKey} borrows them
+ * from its own {@link PrimitivePool}, because with virtual threads a ThreadLocal would initialise a new one
+ * per request.
+ */
+public class JwtCodec {
+
+    private static final Base64.Encoder B64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+    private static final int MIN_TOKEN_LENGTH = 32;
+    private static final int MAX_TOKEN_LENGTH = 4096;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final JwtKeyRing keyRing;
+    private final SigningKey signingKey;
+    private final String headerSegment;
+
+    public JwtCodec(SecretKey key) {
+        this(JwtKeyRing.hmac(key));
+    }
+
+    public JwtCodec(JwtKeyRing keyRing) {
+        this.keyRing = keyRing;
+        this.signingKey = keyRing.active();
+        String header = signingKey.keyId() == null
+                ? "{\"alg\":\"" + signingKey.algorithm() + "\"}"
+                : "{\"alg\":\"" + signingKey.algorithm() + "\",\"kid\":\"" + signingKey.keyId() + "\"}";
+        this.headerSegment = B64_ENCODER.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + ".";
+    }
+
+    public String encode(VerifiedToken claims) {
+        StringBuilder sb = new StringBuilder(256)
+                .append(headerSegment)
+                .append(B64_ENCODER.encodeToString(writePayload(claims)));
+        byte[] signature = signingKey.sign(sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return sb.append('.').append(B64_ENCODER.encodeToString(signature)).toString();
+    }
+
+    /**
+     * Cheap structural check run before any hashing: length bounds, exactly three segments
+     * and only base64url characters.
+     */
+    public static boolean isWellFormed(String token) {
+        int length = token.length();
+        if (length < MIN_TOKEN_LENGTH || length > MAX_TOKEN_LENGTH) {
+            return false;
+        }
+        int dots = 0;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                dots++;
+            } else if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return dots == 2;
+    }
+
+    /**
+     * Verifies signature and expiry and returns the claims.
+     *
+     * @throws MalformedJwtException if the token is not a compact JWS
+     * @throws UnsupportedJwtException if the header names an unknown key or a different algorithm
+     * @throws SignatureException if the signature does not match
+     * @throws ExpiredJwtException if the token is expired
+     */
+    public VerifiedToken decode(String token) {
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (firstDot <= 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw new MalformedJwtException("Token is not a compact JWS");
+        }
+        byte[] bytes = token.getBytes(StandardCharsets.US_ASCII);
+
+        try {
+            String[] header = readHeader(decodeSegment(bytes, 0, firstDot));
+            SigningKey key = keyRing.find(header[1]);
+            if (key == null) {
+                throw new UnsupportedJwtException("Unknown signing key");
+            }
+            // el algoritmo lo fija la clave, nunca la cabecera
+            if (!key.algorithm().equals(header[0])) {
+                throw new UnsupportedJwtException("Unexpected signing algorithm");
+            }
+
+            byte[] signature = decodeSegment(bytes, secondDot + 1, bytes.length);
+            if (!key.verify(bytes, secondDot, signature)) {
+                throw new SignatureException("JWT signature does not match");
+            }
+
+            VerifiedToken claims = readPayload(decodeSegment(bytes, firstDot + 1, secondDot));
+            if (claims.expiresAtMillis() <= 0) {
+                throw new MalformedJwtException("Token does not contain expiration claim");
+            }
+            if (claims.isExpired(System.currentTimeMillis())) {
+                throw new ExpiredJwtException(null, null, "JWT expired");
+            }
+            return claims;
+        } catch (IllegalArgumentException | IOException ex) {
+            throw new MalformedJwtException("Unable to read token", ex);
+        }
+    }
+
+    private byte[] writePayload(VerifiedToken claims) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("sub", claims.subject());
+            if (claims.tokenId() != null) {
+                gen.writeStringField("jti", claims.tokenId());
+            }
+            if (claims.sessionId() != null) {
+                gen.writeStringField("sid", claims.sessionId());
+            }
+            if (claims.userId() != null) {
+                gen.writeNumberField("uid", claims.userId());
+            }
+            if (claims.role() != null) {
+                gen.writeStringField("role", claims.role());
+            }
+            if (claims.flags() != null) {
+                gen.writeNumberField("flags", claims.flags());
+            }
+            gen.writeNumberField("iat", claims.issuedAtMillis() / 1000);
+            gen.writeNumberField("exp", claims.expiresAtMillis() / 1000);
+            gen.writeEndObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns {@code [alg, kid]}.
+     */
+    private String[] readHeader(byte[] header) throws IOException {
+        String alg = null;
+        String kid = null;
+        try (JsonParser parser = jsonFactory.createParser(header)) {
+            expectObject(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "alg" -> alg = parser.getValueAsString();
+                    case "kid" -> kid = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new String[]{alg, kid};
+    }
+
+    private VerifiedToken readPayload(byte[] payload) throws IOException {
+        String subject = null;
+        String tokenId = null;
+        String sessionId = null;
+        Long userId = null;
+        String role = null;
+        Integer flags = null;
+        long issuedAt = 0;
+        long expiresAt = 0;
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            expectObject(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "sub" -> subject = parser.getValueAsString();
+                    case "jti" -> tokenId = parser.getValueAsString();
+                    case "sid" -> sessionId = parser.getValueAsString();
+                    case "uid" -> userId = parser.getValueAsLong();
+                    case "role" -> role = parser.getValueAsString();
+                    case "flags" -> flags = parser.getValueAsInt();
+                    case "iat" -> issuedAt = parser.getValueAsLong() * 1000;
+                    case "exp" -> expiresAt = parser.getValueAsLong() * 1000;
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new VerifiedToken(subject, tokenId, sessionId, userId, role, flags, issuedAt, expiresAt);
+    }
+
+    private static void expectObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new MalformedJwtException("Token segment is not a JSON object");
+        }
+    }
+
+    private static byte[] decodeSegment(byte[] bytes, int from, int to) {
+        ByteBuffer decoded = B64_DECODER.decode(ByteBuffer.wrap(bytes, from, to - from));
+        byte[] out = new byte[decoded.remaining()];
+        decoded.get(out);
+        return out;
+    }
+}
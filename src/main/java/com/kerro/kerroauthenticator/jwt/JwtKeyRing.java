@@ -0,0 +1,97 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The keys tokens are signed and verified with.
+ * <p>
+ * Exactly one key signs new tokens; every key in the ring verifies them, selected by the {@code kid} header.
+ * Rotating means adding the new key to the keystore, making it active and removing the old one once
+ * the tokens it signed have expired. A key without {@code kid} is the legacy HMAC secret, kept so that
+ * tokens issued before switching to asymmetric signing remain valid.
+ */
+public final class JwtKeyRing {
+
+    private final SigningKey active;
+    private final Map<String, SigningKey> keys;
+    private final SigningKey legacy;
+
+    JwtKeyRing(SigningKey active, Map<String, SigningKey> keys, SigningKey legacy) {
+        this.active = active;
+        this.keys = keys;
+        this.legacy = legacy;
+    }
+
+    /**
+     * Ring with a single shared-secret key, tokens carry no {@code kid}.
+     */
+    public static JwtKeyRing hmac(SecretKey secret) {
+        SigningKey key = new HmacSigningKey(null, secret);
+        return new JwtKeyRing(key, Map.of(), key);
+    }
+
+    /**
+     * Loads every entry of the keystore, which must all be EC P-256 or Ed25519, using the alias as {@code kid}.
+     * Private key entries can sign; certificate-only entries verify.
+     *
+     * @param legacySecret optional HMAC secret still accepted for tokens without {@code kid}
+     */
+    public static JwtKeyRing fromKeyStore(KeyStore keyStore, char[] password, String activeKeyId,
+                                          String algorithm, SecretKey legacySecret) throws GeneralSecurityException {
+        Map<String, SigningKey> keys = new HashMap<>();
+        for (String alias : Collections.list(keyStore.aliases())) {
+            Certificate certificate = keyStore.getCertificate(alias);
+            if (certificate == null) continue;
+            Key key = keyStore.isKeyEntry(alias) ? keyStore.getKey(alias, password) : null;
+            keys.put(alias, new AsymmetricSigningKey(alias,
+                    key instanceof PrivateKey privateKey ? privateKey : null, certificate.getPublicKey()));
+        }
+
+        SigningKey active = keys.get(activeKeyId);
+        if (active == null || !active.canSign()) {
+            throw new IllegalStateException("Active JWT key '" + activeKeyId + "' has no private key in the keystore");
+        }
+        if (!active.algorithm().equals(algorithm)) {
+            throw new IllegalStateException("Active JWT key '" + activeKeyId + "' is " + active.algorithm()
+                    + ", expected " + algorithm);
+        }
+        return new JwtKeyRing(active, Map.copyOf(keys),
+                legacySecret != null ? new HmacSigningKey(null, legacySecret) : null);
+    }
+
+    SigningKey active() {
+        return active;
+    }
+
+    /**
+     * Key to verify a token whose header carries the given {@code kid}, or {@code null} if unknown.
+     */
+    SigningKey find(String keyId) {
+        return keyId == null ? legacy : keys.get(keyId);
+    }
+
+    /**
+     * Public keys for the JWKS document. The shared secret is never included.
+     */
+    public List<Map<String, Object>> publicJwks() {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (SigningKey key : keys.values()) {
+            Map<String, Object> jwk = key.publicJwk();
+            if (jwk != null) {
+                jwks.add(jwk);
+            }
+        }
+        jwks.sort((a, b) -> String.valueOf(a.get("kid")).compareTo(String.valueOf(b.get("kid"))));
+        return jwks;
+    }
+}
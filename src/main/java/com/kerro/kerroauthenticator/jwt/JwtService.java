@@ -1,111 +1,128 @@
 package com.kerro.kerroauthenticator.jwt;
 
-import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import com.kerro.kerroauthenticator.security.AuthenticatedUser;
+import com.kerro.kerroauthenticator.security.TokenPrincipal;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import java.nio.charset.StandardCharsets;
-import java.security.Key;
-import java.time.Instant;
-import java.util.Date;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JwtService {
 
-    private final Key signingKey;
-    private final long expirationMillis;
+    private static final SecureRandom RANDOM = new SecureRandom();
 
-    public JwtService(@Value("${security.jwt.secret-key}") String secret,
-                      @Value("${JWT_EXPIRATION}") long expirationMillis) {
-        byte[] keyBytes = decodeSecret(secret);
-        this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+    private final JwtCodec codec;
+    private final long expirationMillis;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final Timer signTimer;
+    private final Timer verifiedTimer;
+    private final Map<TokenRejection, Timer> rejectedTimers = new EnumMap<>(TokenRejection.class);
+
+    public JwtService(JwtKeyRing keyRing,
+                      @Value("${JWT_EXPIRATION}") long expirationMillis,
+                      VerifiedTokenCache verifiedTokenCache,
+                      MeterRegistry meterRegistry) {
+        this.codec = new JwtCodec(keyRing);
         this.expirationMillis = expirationMillis;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.signTimer = Timer.builder("kerro.jwt.sign").register(meterRegistry);
+        // solo se mide la verificación criptográfica; los aciertos de caché están en jwt.verified
+        this.verifiedTimer = Timer.builder("kerro.jwt.verify").tag("outcome", "valid").register(meterRegistry);
+        for (TokenRejection rejection : TokenRejection.values()) {
+            if (rejection == TokenRejection.REVOKED) continue; // la revocación se comprueba después
+            rejectedTimers.put(rejection,
+                    Timer.builder("kerro.jwt.verify").tag("outcome", rejection.tag()).register(meterRegistry));
+        }
+    }
+
+    /**
+     * Verifies the token, answering from the verified-token cache when the same token was seen before.
+     */
+    public VerifiedToken verify(String token) throws JwtException {
+        return verify(token, TokenDigest.sha256(token));
     }
 
-    private byte[] decodeSecret(String secret) {
-        if (secret == null) {
-            throw new IllegalArgumentException("JWT secret is null");
+    /**
+     * Same as {@link #verify(String)} for callers that already computed {@link TokenDigest#sha256(String)}.
+     */
+    public VerifiedToken verify(String token, String digest) throws JwtException {
+        VerifiedToken cached = verifiedTokenCache.get(digest);
+        if (cached != null) {
+            return cached;
         }
-        // Intentar Base64
-        try {
-            return Decoders.BASE64.decode(secret);
-        } catch (Exception ignored) { }
 
-        // Intentar hex
+        long start = System.nanoTime();
+        VerifiedToken verified;
         try {
-            return hexStringToByteArray(secret);
-        } catch (Exception ignored) { }
-
-        // Fallback: bytes UTF-8
-        return secret.getBytes(StandardCharsets.UTF_8);
-    }
-
-    private static byte[] hexStringToByteArray(String s) {
-        String hex = s.startsWith("0x") ? s.substring(2) : s;
-        int len = hex.length();
-        if ((len & 1) != 0) {
-            hex = "0" + hex;
-            len = hex.length();
+            verified = codec.decode(token);
+        } catch (RuntimeException ex) {
+            rejectedTimers.get(TokenRejection.of(ex)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw ex;
         }
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                    + Character.digit(hex.charAt(i + 1), 16));
+        verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (verified.tokenId() == null) {
+            // tokens emitidos antes de incluir jti se identifican por el digest del token
+            verified = verified.withTokenId(digest);
         }
-        return data;
-    }
-
-    private Claims extractAllClaims(String token) throws JwtException {
-        return Jwts.parserBuilder()
-                .setSigningKey(signingKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        verifiedTokenCache.put(digest, verified);
+        return verified;
     }
 
     public String extractUsername(String token) throws JwtException {
-        Claims claims = extractAllClaims(token);
-        return claims.getSubject();
+        return verify(token).subject();
     }
 
     public long getExpirationEpochMillis(String token) throws JwtException {
-        Claims claims = extractAllClaims(token);
-        Date exp = claims.getExpiration();
-        if (exp == null) {
-            throw new IllegalArgumentException("Token does not contain expiration claim");
-        }
-        return exp.toInstant().toEpochMilli();
+        return verify(token).expiresAtMillis();
     }
 
     public boolean isTokenValid(String token) {
         try {
-            Claims claims = extractAllClaims(token);
-            Date exp = claims.getExpiration();
-            return exp != null && exp.toInstant().isAfter(Instant.now());
+            verify(token);
+            return true;
         } catch (JwtException | IllegalArgumentException ex) {
             return false;
         }
     }
 
     public String generateToken(UserDetails user) {
-        return generateToken(user, this.expirationMillis);
+        return generateToken(user, null, this.expirationMillis);
+    }
+
+    /**
+     * Token bound to a session (refresh token family): revoking the session revokes it too.
+     */
+    public String generateToken(UserDetails user, String sessionId) {
+        return generateToken(user, sessionId, this.expirationMillis);
     }
 
     public String generateToken(UserDetails user, long ttlMillis) {
-        Instant now = Instant.now();
-        Date issuedAt = Date.from(now);
-        Date expiry = Date.from(now.plusMillis(ttlMillis));
-
-        return Jwts.builder()
-                .setSubject(user.getUsername())
-                .setIssuedAt(issuedAt)
-                .setExpiration(expiry)
-                .signWith(signingKey)
-                .compact();
+        return generateToken(user, null, ttlMillis);
+    }
+
+    public String generateToken(UserDetails user, String sessionId, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        // id, rol y estado de la cuenta viajan en el token para el modo claims-only
+        Long userId = user instanceof AuthenticatedUser u ? u.getId() : null;
+        String role = user instanceof AuthenticatedUser u ? u.getRole() : null;
+        VerifiedToken claims = new VerifiedToken(user.getUsername(), newTokenId(), sessionId, userId, role,
+                TokenPrincipal.flagsOf(user), now, now + ttlMillis);
+        return signTimer.record(() -> codec.encode(claims));
+    }
+
+    private static String newTokenId() {
+        byte[] id = new byte[16];
+        RANDOM.nextBytes(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Small pool of initialised {@link javax.crypto.Mac} / {@link java.security.Signature} instances.
+ * <p>
+ * Replaces per-thread caching: with virtual threads every request runs on a fresh thread, so a
+ * ThreadLocal would initialise a new primitive per request and never reuse it. Instances are only
+ * returned after a completed operation, which leaves them reset; on failure they are dropped.
+ */
+final class PrimitivePool<T> {
+
+    private static final int CAPACITY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final ArrayBlockingQueue<T> idle = new ArrayBlockingQueue<>(CAPACITY);
+    private final Supplier<T> factory;
+
+    PrimitivePool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    T acquire() {
+        T instance = idle.poll();
+        return instance != null ? instance : factory.get();
+    }
+
+    void release(T instance) {
+        idle.offer(instance);
+    }
+}
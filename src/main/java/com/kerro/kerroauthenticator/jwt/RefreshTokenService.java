@@ -0,0 +1,216 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.exception.AuthenticationFailedException;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Rotating refresh tokens kept in Redis.
+ * <p>
+ * A refresh token is {@code <subject>.<familyId>.<secret>}, the subject base64url-encoded. Each login starts
+ * a family, stored as one hash under {@value #FAMILY_PREFIX}{@code {subject}:<familyId>} holding the digest of
+ * the only token of the family that is still current, the digests of the last eight it
+ * replaced, its subject and the second it was created. Rotating swaps the digest in a single script call;
+ * presenting one of those replaced tokens means it was copied, so the whole family is deleted. Any other secret
+ * is just invalid: the family id and the subject are readable in every access token, so a guessed secret must
+ * not be able to end the session.
+ * Families created before the user's "issued before" watermark are rejected as well, so logout-all also
+ * ends every refresh token.
+ * <p>
+ * A family is the user's session: its id is the {@code sid} of the access tokens issued with it, and
+ * every script keeps the user's session index (see {@link SessionRegistry}) in step with the family.
+ * <p>
+ * The family, the session index and the user's watermark all carry the subject as hash tag, so every key a
+ * script touches is passed in KEYS and they all map to the same cluster slot. The subject travels in the
+ * token because the family key cannot be found without it.
+ * <p>
+ * Unlike revocation checks, these calls are not behind the circuit breaker of {@link TokenBlacklistService}
+ * and have no local fallback: families only exist in Redis, so while it is unavailable issuing, rotating and
+ * revoking fail with the Redis error once {@code spring.data.redis.timeout} expires.
+ */
+@Service
+public class RefreshTokenService {
+
+    public static final String FAMILY_PREFIX = "rtf:";
+
+    /**
+     * KEYS[1] family key, KEYS[2] session index, ARGV[1] digest, ARGV[2] subject, ARGV[3] created at in seconds,
+     * ARGV[4] ttl millis, ARGV[5] family id, ARGV[6] now millis, ARGV[7] user agent, ARGV[8] client address.
+     * Expired sessions of the user are trimmed from the index on the way.
+     */
+    public static final RedisScript<Long> ISSUE = new DefaultRedisScript<>("""
+            redis.call('HSET', KEYS[1], 'cur', ARGV[1], 'sub', ARGV[2], 'iat', ARGV[3], 'ua', ARGV[7], 'ip', ARGV[8])
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', ARGV[6])
+            redis.call('ZADD', KEYS[2], tonumber(ARGV[6]) + tonumber(ARGV[4]), ARGV[5])
+            redis.call('PEXPIRE', KEYS[2], ARGV[4])
+            return 1
+            """, Long.class);
+
+    /**
+     * KEYS[1] family key, KEYS[2] user watermark, KEYS[3] session index, ARGV[1] presented digest,
+     * ARGV[2] new digest, ARGV[3] ttl millis, ARGV[4] family id, ARGV[5] now millis, ARGV[6] replaced digests kept.
+     * Returns OK:subject, REUSED:subject or INVALID. Only a digest the family issued before counts as reuse.
+     */
+    public static final RedisScript<String> ROTATE = new DefaultRedisScript<>("""
+            local family = redis.call('HMGET', KEYS[1], 'cur', 'sub', 'iat', 'prev')
+            if not family[1] then return 'INVALID' end
+            local previous = family[4] or ''
+            if family[1] ~= ARGV[1] then
+                if not string.find(' ' .. previous .. ' ', ' ' .. ARGV[1] .. ' ', 1, true) then return 'INVALID' end
+                redis.call('DEL', KEYS[1])
+                redis.call('ZREM', KEYS[3], ARGV[4])
+                return 'REUSED:' .. family[2]
+            end
+            local watermark = redis.call('GET', KEYS[2])
+            if watermark and tonumber(family[3]) < tonumber(watermark) then
+                redis.call('DEL', KEYS[1])
+                redis.call('ZREM', KEYS[3], ARGV[4])
+                return 'INVALID'
+            end
+            if previous ~= '' then previous = ' ' .. previous end
+            previous = string.sub(ARGV[1] .. previous, 1, tonumber(ARGV[6]) * (#ARGV[1] + 1) - 1)
+            redis.call('HSET', KEYS[1], 'cur', ARGV[2], 'prev', previous)
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('ZADD', KEYS[3], 'XX', tonumber(ARGV[5]) + tonumber(ARGV[3]), ARGV[4])
+            redis.call('PEXPIRE', KEYS[3], ARGV[3])
+            return 'OK:' .. family[2]
+            """, String.class);
+
+    /** KEYS[1] family key, KEYS[2] session index, ARGV[1] subject, ARGV[2] family id. Only the owner can revoke it. */
+    public static final RedisScript<Long> REVOKE = new DefaultRedisScript<>("""
+            if redis.call('HGET', KEYS[1], 'sub') == ARGV[1] then
+                redis.call('ZREM', KEYS[2], ARGV[2])
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final String INVALID_TOKEN = "Invalid refresh token";
+    private static final String OK = "OK:";
+    private static final String REUSED = "REUSED:";
+    private static final int MAX_CLIENT_INFO = 256;
+    // tokens sustituidos que aún delatan una copia; uno más antiguo ya no rota y solo se rechaza
+    private static final int PREVIOUS_DIGESTS = 8;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TokenBlacklistService tokenBlacklistService;
+    private final long ttlMillis;
+
+    public RefreshTokenService(RedisTemplate<String, String> redisTemplate,
+                               TokenBlacklistService tokenBlacklistService,
+                               @Value("${security.jwt.refresh.ttl}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.tokenBlacklistService = tokenBlacklistService;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public record Issued(String sessionId, String refreshToken) {
+    }
+
+    public record Rotation(String subject, String sessionId, String refreshToken) {
+    }
+
+    private record Family(String subject, String id) {
+    }
+
+    /**
+     * Hash of the family; shares the {@code {subject}} tag with the user's session index and watermark.
+     */
+    static String familyKey(String subject, String familyId) {
+        return FAMILY_PREFIX + '{' + subject + "}:" + familyId;
+    }
+
+    /**
+     * Starts a new token family (session) for the subject and returns its first refresh token.
+     * The user agent and client address are kept only to let the user recognise the session.
+     */
+    public Issued issue(String subject, String userAgent, String clientAddress) {
+        String familyId = randomId(16);
+        String token = tokenPrefix(subject, familyId) + randomId(32);
+        long now = System.currentTimeMillis();
+        redisTemplate.execute(ISSUE, List.of(familyKey(subject, familyId), SessionRegistry.indexKey(subject)),
+                TokenDigest.sha256(token), subject, Long.toString(now / 1000), Long.toString(ttlMillis),
+                familyId, Long.toString(now), truncate(userAgent), truncate(clientAddress));
+        return new Issued(familyId, token);
+    }
+
+    /**
+     * Exchanges a refresh token for the next one of its family.
+     *
+     * @throws AuthenticationFailedException if the token is unknown, expired, revoked or was already used
+     */
+    public Rotation rotate(String refreshToken) {
+        Family family = family(refreshToken);
+        String next = tokenPrefix(family.subject(), family.id()) + randomId(32);
+        String result = redisTemplate.execute(ROTATE,
+                List.of(familyKey(family.subject(), family.id()), TokenBlacklistService.watermarkKey(family.subject()),
+                        SessionRegistry.indexKey(family.subject())),
+                TokenDigest.sha256(refreshToken), TokenDigest.sha256(next), Long.toString(ttlMillis),
+                family.id(), Long.toString(System.currentTimeMillis()), Integer.toString(PREVIOUS_DIGESTS));
+
+        if (result != null && result.startsWith(OK)) {
+            return new Rotation(result.substring(OK.length()), family.id(), next);
+        }
+        if (result != null && result.startsWith(REUSED)) {
+            // un refresh token copiado: también caen los access tokens ya emitidos para la sesión
+            tokenBlacklistService.revokeSessions(family.subject(), List.of(family.id()));
+            log.warn("Refresh token reuse detected for {} - session revoked", result.substring(REUSED.length()));
+        }
+        throw new AuthenticationFailedException(INVALID_TOKEN);
+    }
+
+    /**
+     * Ends the family of the given refresh token if it belongs to the subject.
+     */
+    public boolean revoke(String refreshToken, String subject) {
+        if (refreshToken == null || refreshToken.isBlank()) return false;
+        Family family = family(refreshToken);
+        if (!family.subject().equals(subject)) return false;
+        Long deleted = redisTemplate.execute(REVOKE,
+                List.of(familyKey(subject, family.id()), SessionRegistry.indexKey(subject)), subject, family.id());
+        return deleted != null && deleted > 0;
+    }
+
+    private static String tokenPrefix(String subject, String familyId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(subject.getBytes(StandardCharsets.UTF_8))
+                + '.' + familyId + '.';
+    }
+
+    private static Family family(String refreshToken) {
+        String[] parts = refreshToken == null ? new String[0] : refreshToken.split("\\.", -1);
+        if (parts.length != 3 || parts[0].isEmpty() || parts[1].isEmpty() || parts[2].isEmpty()) {
+            throw new AuthenticationFailedException(INVALID_TOKEN);
+        }
+        try {
+            return new Family(new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8), parts[1]);
+        } catch (IllegalArgumentException ex) {
+            throw new AuthenticationFailedException(INVALID_TOKEN);
+        }
+    }
+
+    private static String truncate(String value) {
+        if (value == null) return "";
+        return value.length() > MAX_CLIENT_INFO ? value.substring(0, MAX_CLIENT_INFO) : value;
+    }
+
+    private static String randomId(int bytes) {
+        byte[] id = new byte[bytes];
+        RANDOM.nextBytes(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+    }
+}
@@ -0,0 +1,39 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Small negative cache of recently rejected token digests, so a client retrying the same
+ * bad, expired or revoked token is refused in memory without HMAC or Redis work.
+ */
+@Component
+public class RejectedTokenCache {
+
+    private final Cache<String, TokenRejection> cache;
+
+    public RejectedTokenCache(@Value("${security.jwt.rejected-cache.maximum-size}") long maximumSize,
+                              @Value("${security.jwt.rejected-cache.ttl}") Duration ttl,
+                              MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.rejected");
+    }
+
+    public TokenRejection get(String digest) {
+        return cache.getIfPresent(digest);
+    }
+
+    public void put(String digest, TokenRejection rejection) {
+        cache.put(digest, rejection);
+    }
+}
@@ -0,0 +1,34 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.utils.CircuitBreaker;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the revocation store circuit as the "revocationStore" health component. An open circuit is
+ * DEGRADED rather than DOWN: the service keeps answering from local state.
+ */
+@Component
+public class RevocationStoreHealthIndicator implements HealthIndicator {
+
+    static final Status DEGRADED = new Status("DEGRADED", "Revocation checks answered from local state");
+
+    private final TokenBlacklistService tokenBlacklistService;
+
+    public RevocationStoreHealthIndicator(TokenBlacklistService tokenBlacklistService) {
+        this.tokenBlacklistService = tokenBlacklistService;
+    }
+
+    @Override
+    public Health health() {
+        CircuitBreaker.State state = tokenBlacklistService.circuitState();
+        Health.Builder builder = state == CircuitBreaker.State.CLOSED ? Health.up() : Health.status(DEGRADED);
+        return builder
+                .withDetail("circuit", state)
+                .withDetail("fallback", tokenBlacklistService.isFailClosed() ? "fail-closed" : "fail-open")
+                .withDetail("pendingRevocations", tokenBlacklistService.pendingRevocations())
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.dto.SessionDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of each user's active sessions.
+ * <p>
+ * A session is a refresh token family (see {@link RefreshTokenService}). Each user has one sorted set under
+ * {@value #SESSION_PREFIX}{@code {subject}} with the family ids as members, scored by the time the family expires; the
+ * family scripts add, extend and remove members, so listing is a range query from now instead of a scan.
+ * Expired members are trimmed whenever the set is written or listed, and the set itself expires with the
+ * user's last session. Listing and bulk revocation reach the families through ids read from the set, so
+ * those family keys cannot be declared in KEYS; they carry the same {@code {subject}} hash tag as the set
+ * and live in its slot.
+ * <p>
+ * Revoking a session deletes its family, so it can no longer be refreshed, and revokes its {@code sid}
+ * through {@link TokenBlacklistService#revokeSessions}, which ends the access tokens already issued for it.
+ * Like the families, the index is not behind the revocation circuit breaker: listing and revoking fail
+ * with the Redis error while it is unavailable.
+ */
+@Service
+public class SessionRegistry {
+
+    public static final String SESSION_PREFIX = "sess:";
+
+    /**
+     * KEYS[1] session index, ARGV[1] now millis, ARGV[2] prefix of the user's family keys.
+     * Returns id, expiry, created at, user agent and address for every live session, oldest expiry first.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static final RedisScript<List> LIST = new DefaultRedisScript<>("""
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1])
+            local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '(' .. ARGV[1], '+inf', 'WITHSCORES')
+            local sessions = {}
+            for i = 1, #ids, 2 do
+                local family = redis.call('HMGET', ARGV[2] .. ids[i], 'iat', 'ua', 'ip')
+                table.insert(sessions, ids[i])
+                table.insert(sessions, ids[i + 1])
+                table.insert(sessions, family[1] or '')
+                table.insert(sessions, family[2] or '')
+                table.insert(sessions, family[3] or '')
+            end
+            return sessions
+            """, List.class);
+
+    /** KEYS[1] session index, KEYS[2] family key, ARGV[1] family id. 1 if the session was the user's. */
+    public static final RedisScript<Long> REVOKE = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[1], ARGV[1]) == 1 then
+                redis.call('DEL', KEYS[2])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * KEYS[1] session index, ARGV[1] family id to keep (may be empty), ARGV[2] prefix of the user's family keys.
+     * Returns the ids of the revoked sessions.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static final RedisScript<List> REVOKE_OTHERS = new DefaultRedisScript<>("""
+            local ids = redis.call('ZRANGE', KEYS[1], 0, -1)
+            local revoked = {}
+            for _, id in ipairs(ids) do
+                if id ~= ARGV[1] then
+                    redis.call('DEL', ARGV[2] .. id)
+                    redis.call('ZREM', KEYS[1], id)
+                    table.insert(revoked, id)
+                end
+            end
+            return revoked
+            """, List.class);
+
+    private static final Logger log = LoggerFactory.getLogger(SessionRegistry.class);
+    private static final int FIELDS_PER_SESSION = 5;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TokenBlacklistService tokenBlacklistService;
+
+    public SessionRegistry(RedisTemplate<String, String> redisTemplate, TokenBlacklistService tokenBlacklistService) {
+        this.redisTemplate = redisTemplate;
+        this.tokenBlacklistService = tokenBlacklistService;
+    }
+
+    static String indexKey(String subject) {
+        return SESSION_PREFIX + '{' + subject + '}';
+    }
+
+    /**
+     * Live sessions of the user; {@code currentSessionId} marks the one making the request.
+     */
+    @SuppressWarnings("unchecked")
+    public List<SessionDTO> list(String subject, String currentSessionId) {
+        List<Object> fields = redisTemplate.execute(LIST, List.of(indexKey(subject)),
+                Long.toString(System.currentTimeMillis()), RefreshTokenService.familyKey(subject, ""));
+        List<SessionDTO> sessions = new ArrayList<>();
+        for (int i = 0; fields != null && i + FIELDS_PER_SESSION <= fields.size(); i += FIELDS_PER_SESSION) {
+            String id = (String) fields.get(i);
+            String createdAt = (String) fields.get(i + 2);
+            sessions.add(new SessionDTO(id,
+                    createdAt.isEmpty() ? null : Long.parseLong(createdAt) * 1000,
+                    (long) Double.parseDouble((String) fields.get(i + 1)),
+                    emptyToNull((String) fields.get(i + 3)),
+                    emptyToNull((String) fields.get(i + 4)),
+                    id.equals(currentSessionId)));
+        }
+        return sessions;
+    }
+
+    /**
+     * Ends one session of the user.
+     *
+     * @return false if the user has no such session
+     */
+    public boolean revoke(String subject, String sessionId) {
+        Long removed = redisTemplate.execute(REVOKE,
+                List.of(indexKey(subject), RefreshTokenService.familyKey(subject, sessionId)), sessionId);
+        if (removed == null || removed == 0) {
+            return false;
+        }
+        tokenBlacklistService.revokeSessions(subject, List.of(sessionId));
+        log.info("Session revoked for {}", subject);
+        return true;
+    }
+
+    /**
+     * Ends every session of the user except {@code keepSessionId} (all of them when it is null).
+     *
+     * @return number of sessions revoked
+     */
+    @SuppressWarnings("unchecked")
+    public int revokeOthers(String subject, String keepSessionId) {
+        List<Object> revoked = redisTemplate.execute(REVOKE_OTHERS, List.of(indexKey(subject)),
+                keepSessionId == null ? "" : keepSessionId, RefreshTokenService.familyKey(subject, ""));
+        if (revoked == null || revoked.isEmpty()) {
+            return 0;
+        }
+        tokenBlacklistService.revokeSessions(subject, revoked.stream().map(String.class::cast).toList());
+        log.info("Revoked {} sessions for {}", revoked.size(), subject);
+        return revoked.size();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
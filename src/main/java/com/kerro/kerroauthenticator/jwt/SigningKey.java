@@ -0,0 +1,25 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import java.util.Map;
+
+/**
+ * One entry of the {@link JwtKeyRing}: signs and verifies the {@code header.payload} bytes of a JWS.
+ */
+interface SigningKey {
+
+    /** The {@code kid} header of tokens signed with this key, or {@code null} for the legacy HMAC key. */
+    String keyId();
+
+    /** The JWS {@code alg} header value. */
+    String algorithm();
+
+    /** Whether this key holds private material and can issue tokens. */
+    boolean canSign();
+
+    byte[] sign(byte[] data);
+
+    boolean verify(byte[] data, int length, byte[] signature);
+
+    /** Public JWK for the JWKS document, or {@code null} when the key must not be published. */
+    Map<String, Object> publicJwk();
+}
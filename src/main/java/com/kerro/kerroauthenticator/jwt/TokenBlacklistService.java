@@ -1,39 +1,763 @@
 package com.kerro.kerroauthenticator.jwt;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kerro.kerroauthenticator.utils.CircuitBreaker;
+import com.kerro.kerroauthenticator.utils.LogSampler;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Token revocation backed by Redis.
+ * <p>
+ * A single token is revoked by storing the 128-bit digest of its {@code jti} under
+ * {@value #TOKEN_PREFIX}{@code {subject}:<digest>}; every token of a user is revoked at once with an "issued
+ * before" watermark under {@value #USER_PREFIX}{@code {subject}}. A session is revoked like a token, by the
+ * digest of its {@code sid}, which ends every access token issued for it. All three are checked in one round
+ * trip by {@link #REVOCATION_CHECK}; they carry the subject as hash tag, like the user's refresh token keys
+ * (see {@link RefreshTokenService}), so the script's keys share one slot on Redis Cluster.
+ * <p>
+ * Token keys written before they were tagged ({@value #TOKEN_PREFIX}{@code <digest>}) cannot be moved: the
+ * subject is not in the key. They outlive the deploy by at most one token lifetime, so each replica loads
+ * them into a local set on startup (and on every resync while they last) and checks it before Redis.
+ * <p>
+ * Lookups are fronted by an in-memory Bloom filter of revoked digests plus a local copy of the
+ * watermarks: when neither can match, Redis is skipped entirely. The filter is split in generations
+ * by token expiry so expired revocations are dropped by discarding whole generations. Replicas keep
+ * their copies in sync through the {@value #REVOCATION_CHANNEL} channel. Pub/sub does not replay
+ * messages published while a replica was not subscribed, so the copies are rebuilt from a Redis scan
+ * each time the channel subscription is established (on startup and after every reconnect) and
+ * refreshed periodically; until the first scan after a subscription completes, lookups go to Redis.
+ * <p>
+ * Redis calls go through a {@link CircuitBreaker}. While it is open, revocations are kept in a local
+ * pending store and lookups are answered from local state; a lookup that cannot be settled locally
+ * is accepted or rejected depending on {@code security.blacklist.fallback.fail-closed}. Pending
+ * revocations are written to Redis and published to the other replicas once the circuit closes.
+ */
 @Service
-public class TokenBlacklistService {
+public class TokenBlacklistService implements MessageListener, SubscriptionListener {
+
+    public static final String REVOCATION_CHANNEL = "kerro:tokens:revoked";
+    public static final String TOKEN_PREFIX = "rv:t:";
+    public static final String USER_PREFIX = "rv:u:";
+
+    /**
+     * KEYS[1] token key, KEYS[2] user watermark key, optional KEYS[3] session key, all tagged with the subject,
+     * ARGV[1] token iat in seconds.
+     * 1 = revoked, 2 = below watermark, 3 = session revoked.
+     */
+    public static final RedisScript<Long> REVOCATION_CHECK = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then return 1 end
+            if KEYS[3] and redis.call('EXISTS', KEYS[3]) == 1 then return 3 end
+            local watermark = redis.call('GET', KEYS[2])
+            if watermark and tonumber(ARGV[1]) < tonumber(watermark) then return 2 end
+            return 0
+            """, Long.class);
+
+    private static final Logger log = LoggerFactory.getLogger(TokenBlacklistService.class);
+    private static final String REVOKED = "1";
+    private static final String TOKEN_MESSAGE = "t:";
+    private static final String USER_MESSAGE = "u:";
+    // Claves antiguas: el JWT completo, que siempre empieza por la cabecera {" codificada
+    private static final String LEGACY_KEY_PATTERN = "eyJ*";
+    private static final int SCAN_BATCH = 1000;
+    private static final LogSampler REDIS_FAILURE_LOG = new LogSampler(5, Duration.ofSeconds(10));
+    private static final ObjectMapper LEGACY_READER = new ObjectMapper();
 
     private final RedisTemplate<String, String> redisTemplate;
     private final ValueOperations<String, String> valueOps;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final long maxTokenLifetimeMillis;
+    private final Duration watermarkTtl;
+    private final boolean bloomEnabled;
+    private final long generationMillis;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final ConcurrentNavigableMap<Long, BloomFilter> generations = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> watermarks = new ConcurrentHashMap<>();
+    private volatile boolean bloomReady;
+    private volatile boolean subscribed;
+    // cambia en cada (re)suscripción: un rebuild solo deja el filtro listo si no hubo otra entretanto
+    private final AtomicLong subscriptionEpoch = new AtomicLong();
+    private final Timer checkTimer;
+    private final Timer batchCheckTimer;
+    private final Timer revokeTimer;
+    private final Timer revokeAllTimer;
+    private final Counter localLookups;
+    private final Counter redisLookups;
+    private final Counter fallbackAccepted;
+    private final Counter fallbackRejected;
+    private final CircuitBreaker circuitBreaker;
+    private final boolean failClosed;
+    // revocaciones hechas con el circuito abierto, pendientes de escribir en Redis
+    // por clave completa de Redis, que ya lleva el sujeto
+    private final Map<String, Long> pendingTokens = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingWatermarks = new ConcurrentHashMap<>();
+    private final ReentrantLock replayLock = new ReentrantLock();
+    // sin synchronized: el escaneo bloquearía el hilo portador de un hilo virtual
+    private final ReentrantLock resyncLock = new ReentrantLock();
+    private final AtomicBoolean resyncRequested = new AtomicBoolean();
+    // digests de las claves sin etiquetar anteriores al despliegue, hasta que caducan
+    private final Map<String, Long> legacyTokens = new ConcurrentHashMap<>();
 
-    public TokenBlacklistService(RedisTemplate<String, String> redisTemplate) {
+    public TokenBlacklistService(RedisTemplate<String, String> redisTemplate,
+                                 VerifiedTokenCache verifiedTokenCache,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 @Value("${JWT_EXPIRATION}") long maxTokenLifetimeMillis,
+                                 @Value("${security.jwt.refresh.ttl}") Duration refreshTokenTtl,
+                                 @Value("${security.blacklist.bloom.enabled}") boolean bloomEnabled,
+                                 @Value("${security.blacklist.bloom.generation}") Duration generation,
+                                 @Value("${security.blacklist.bloom.expected-insertions}") long expectedInsertions,
+                                 @Value("${security.blacklist.bloom.false-positive-rate}") double falsePositiveRate,
+                                 @Value("${security.blacklist.circuit.failure-threshold}") int failureThreshold,
+                                 @Value("${security.blacklist.circuit.open-duration}") Duration openDuration,
+                                 @Value("${security.blacklist.fallback.fail-closed}") boolean failClosed,
+                                 MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
         this.valueOps = redisTemplate.opsForValue();
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.maxTokenLifetimeMillis = maxTokenLifetimeMillis;
+        // el watermark tambien invalida las familias de refresh tokens, que viven mas que los access tokens
+        this.watermarkTtl = Duration.ofMillis(Math.max(maxTokenLifetimeMillis, refreshTokenTtl.toMillis()));
+        this.bloomEnabled = bloomEnabled;
+        this.generationMillis = generation.toMillis();
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.checkTimer = redisTimer(meterRegistry, "check");
+        this.batchCheckTimer = redisTimer(meterRegistry, "batch-check");
+        this.revokeTimer = redisTimer(meterRegistry, "revoke");
+        this.revokeAllTimer = redisTimer(meterRegistry, "revoke-all");
+        // source=local: el filtro Bloom y los watermarks locales descartaron la revocación sin ir a Redis
+        this.localLookups = Counter.builder("kerro.blacklist.lookups").tag("source", "local").register(meterRegistry);
+        this.redisLookups = Counter.builder("kerro.blacklist.lookups").tag("source", "redis").register(meterRegistry);
+        this.fallbackAccepted = Counter.builder("kerro.blacklist.fallback").tag("decision", "accepted").register(meterRegistry);
+        this.fallbackRejected = Counter.builder("kerro.blacklist.fallback").tag("decision", "rejected").register(meterRegistry);
+        this.failClosed = failClosed;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration, this::onCircuitTransition);
+        // 0 = cerrado, 1 = abierto, 2 = semiabierto
+        Gauge.builder("kerro.blacklist.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .register(meterRegistry);
+        Gauge.builder("kerro.blacklist.pending", this, TokenBlacklistService::pendingRevocations).register(meterRegistry);
+        if (bloomEnabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(REVOCATION_CHANNEL));
+        }
     }
 
-    public void blacklistToken(String token, long expiryEpochMillis) {
+    public void blacklistToken(String token, VerifiedToken verified) {
         if (token == null || token.isBlank()) return;
+        verifiedTokenCache.invalidate(TokenDigest.sha256(token));
+        revoke(verified.subject(), verified.tokenId(), verified.expiresAtMillis());
+    }
 
+    /**
+     * Invalidates every token of the user issued before now with a single key, including refresh token
+     * families started before that point (see {@link RefreshTokenService}).
+     * Tokens issued within the same second as the call stay valid, since iat has second precision.
+     */
+    public void revokeAllIssuedBefore(String subject, long epochMillis) {
+        long watermark = epochMillis / 1000;
+        boolean stored = guarded(() -> {
+            revokeAllTimer.record(() -> valueOps.set(watermarkKey(subject), Long.toString(watermark), watermarkTtl));
+            return true;
+        }, () -> false);
+        if (!stored) {
+            pendingWatermarks.merge(subject, watermark, Math::max);
+        }
+        if (bloomEnabled) {
+            rememberWatermark(subject, watermark);
+            if (stored) publish(USER_MESSAGE + subject + ':' + watermark);
+        }
+    }
+
+    /**
+     * Revokes every access token issued for the given sessions of the subject, until the longest-lived of
+     * them has expired. The writes and their announcements to the other replicas go out in one pipeline.
+     */
+    public void revokeSessions(String subject, Collection<String> sessionIds) {
+        if (sessionIds.isEmpty()) return;
+        long expiresAt = System.currentTimeMillis() + maxTokenLifetimeMillis;
+        Duration ttl = Duration.ofMillis(maxTokenLifetimeMillis);
+        List<String> digests = sessionIds.stream().map(TokenDigest::shortSha256).toList();
+        boolean stored = guarded(() -> {
+            revokeTimer.record(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (String digest : digests) {
+                        ops.opsForValue().set(tokenKey(subject, digest), REVOKED, ttl);
+                        if (bloomEnabled) {
+                            ops.convertAndSend(REVOCATION_CHANNEL, TOKEN_MESSAGE + digest + ':' + expiresAt);
+                        }
+                    }
+                    return null;
+                }
+            }));
+            return true;
+        }, () -> false);
+        for (String digest : digests) {
+            if (!stored) pendingTokens.put(tokenKey(subject, digest), expiresAt);
+            if (bloomEnabled) rememberToken(digest, expiresAt);
+        }
+    }
+
+    public boolean isBlacklisted(VerifiedToken verified) {
+        String digest = TokenDigest.shortSha256(verified.tokenId());
+        String sessionDigest = sessionDigest(verified);
+        if (isLocallyCleared(verified, digest, sessionDigest)) {
+            localLookups.increment();
+            return false;
+        }
+        if (isPendingRevocation(verified, digest, sessionDigest) || isLegacyRevocation(digest, sessionDigest)) {
+            return true;
+        }
+        redisLookups.increment();
+        String subject = verified.subject();
+        List<String> keys = sessionDigest == null
+                ? List.of(tokenKey(subject, digest), watermarkKey(subject))
+                : List.of(tokenKey(subject, digest), watermarkKey(subject), tokenKey(subject, sessionDigest));
+        return guarded(() -> {
+            Long result = checkTimer.record(() -> redisTemplate.execute(REVOCATION_CHECK, keys,
+                    Long.toString(verified.issuedAtMillis() / 1000)));
+            return result != null && result != 0;
+        }, this::fallbackDecision);
+    }
+
+    /**
+     * Batch form of {@link #isBlacklisted(VerifiedToken)}. Tokens the local filter clears skip Redis;
+     * the rest are resolved with a single MGET over their token keys and their users' watermarks.
+     */
+    public boolean[] areBlacklisted(List<VerifiedToken> tokens) {
+        boolean[] revoked = new boolean[tokens.size()];
+        List<String> keys = new ArrayList<>();
+        Map<String, Integer> userKeys = new HashMap<>();
+        List<int[]> pending = new ArrayList<>();
+
+        for (int i = 0; i < tokens.size(); i++) {
+            VerifiedToken verified = tokens.get(i);
+            String digest = TokenDigest.shortSha256(verified.tokenId());
+            String sessionDigest = sessionDigest(verified);
+            if (isLocallyCleared(verified, digest, sessionDigest)) {
+                localLookups.increment();
+                continue;
+            }
+            if (isPendingRevocation(verified, digest, sessionDigest) || isLegacyRevocation(digest, sessionDigest)) {
+                revoked[i] = true;
+                continue;
+            }
+            redisLookups.increment();
+            keys.add(tokenKey(verified.subject(), digest));
+            int tokenKey = keys.size() - 1;
+            int userKey = userKeys.computeIfAbsent(watermarkKey(verified.subject()), key -> {
+                keys.add(key);
+                return keys.size() - 1;
+            });
+            int sessionKey = -1;
+            if (sessionDigest != null) {
+                keys.add(tokenKey(verified.subject(), sessionDigest));
+                sessionKey = keys.size() - 1;
+            }
+            pending.add(new int[]{i, tokenKey, userKey, sessionKey});
+        }
+        if (pending.isEmpty()) {
+            return revoked;
+        }
+
+        // null = Redis no respondió (o circuito abierto)
+        List<String> values = guarded(() -> batchCheckTimer.record(() -> valueOps.multiGet(keys)), () -> null);
+        if (values == null) {
+            for (int[] entry : pending) {
+                revoked[entry[0]] = fallbackDecision();
+            }
+            return revoked;
+        }
+        for (int[] entry : pending) {
+            VerifiedToken verified = tokens.get(entry[0]);
+            String watermark = values.get(entry[2]);
+            revoked[entry[0]] = values.get(entry[1]) != null
+                    || (entry[3] >= 0 && values.get(entry[3]) != null)
+                    || (watermark != null && verified.issuedAtMillis() / 1000 < Long.parseLong(watermark));
+        }
+        return revoked;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 2) return;
+        String id = body.substring(2, separator);
+        long value = Long.parseLong(body.substring(separator + 1));
+        if (body.startsWith(TOKEN_MESSAGE)) {
+            rememberToken(id, value);
+        } else if (body.startsWith(USER_MESSAGE)) {
+            rememberWatermark(id, value);
+        }
+    }
+
+    /**
+     * The channel is subscribed, on startup or after the connection was recovered: messages published
+     * in between are lost, so lookups go to Redis until the local copies are rebuilt.
+     */
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        subscriptionEpoch.incrementAndGet();
+        bloomReady = false;
+        subscribed = true;
+        // fuera del hilo del contenedor, que no debe bloquearse con el scan
+        Thread.startVirtualThread(this::resync);
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] channel, long count) {
+        subscribed = false;
+        bloomReady = false;
+        log.warn("Unsubscribed from {}, revocation lookups go to Redis until resubscribed", REVOCATION_CHANNEL);
+    }
+
+    @PostConstruct
+    void migrateLegacyEntries() {
+        try {
+            int migrated = scan(LEGACY_KEY_PATTERN, this::migrateLegacyKeys);
+            if (migrated > 0) {
+                log.info("Migrated {} revoked tokens to digest keys", migrated);
+            }
+            long now = System.currentTimeMillis();
+            scan(TOKEN_PREFIX + "*", keys -> loadLegacyTokens(keys, now));
+            if (!legacyTokens.isEmpty()) {
+                log.info("Loaded {} revoked tokens stored under untagged keys", legacyTokens.size());
+            }
+            AtomicInteger watermarksMigrated = new AtomicInteger();
+            scan(USER_PREFIX + "*", keys -> watermarksMigrated.addAndGet(migrateLegacyWatermarks(keys)));
+            if (watermarksMigrated.get() > 0) {
+                log.info("Migrated {} user watermarks to hash-tagged keys", watermarksMigrated.get());
+            }
+        } catch (Exception ex) {
+            log.warn("Could not migrate legacy revoked tokens: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Loads every revocation stored in Redis into the local filter and watermarks. Runs after each
+     * subscription and periodically, which bounds how long a message lost on a connection that dropped
+     * without notice can go unseen. A failed periodic resync keeps the current copies.
+     * <p>
+     * A call made while another one is scanning does not wait for it: it leaves a request that the running
+     * one picks up when it finishes, so a resubscription during a periodic run is not lost and no thread
+     * blocks on the scan.
+     */
+    @Scheduled(fixedDelayString = "${security.blacklist.bloom.resync-interval}",
+            initialDelayString = "${security.blacklist.bloom.resync-interval}")
+    public void resync() {
+        if (!bloomEnabled) return;
+        resyncRequested.set(true);
+        while (resyncRequested.get() && resyncLock.tryLock()) {
+            try {
+                resyncRequested.set(false);
+                if (subscribed) rebuildFilter();
+            } finally {
+                resyncLock.unlock();
+            }
+        }
+    }
+
+    private void rebuildFilter() {
+        long epoch = subscriptionEpoch.get();
+        boolean firstSync = !bloomReady;
+        try {
+            long now = System.currentTimeMillis();
+            int tokens = scan(TOKEN_PREFIX + "*", keys -> loadTokens(keys, now));
+            int users = scan(USER_PREFIX + "{*", this::loadWatermarks);
+            bloomReady = subscribed && epoch == subscriptionEpoch.get();
+            if (firstSync) {
+                log.info("Revocation filter rebuilt with {} tokens and {} user watermarks", tokens, users);
+            } else {
+                log.debug("Revocation filter resynced with {} tokens and {} user watermarks", tokens, users);
+            }
+        } catch (Exception ex) {
+            // Sin filtro fiable las consultas siguen yendo a Redis hasta el siguiente intento
+            log.warn("Could not rebuild revocation filter, falling back to Redis lookups: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Drops generations and watermarks that can no longer match an unexpired token.
+     */
+    @Scheduled(fixedDelayString = "PT5M")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        pendingTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        legacyTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        if (circuitBreaker.getState() == CircuitBreaker.State.CLOSED && pendingRevocations() > 0) {
+            replayPending();
+        }
+        if (!bloomEnabled) return;
+        generations.headMap(now).clear();
+        long oldestLiveIssuedAt = (now - maxTokenLifetimeMillis) / 1000;
+        watermarks.values().removeIf(watermark -> watermark < oldestLiveIssuedAt);
+    }
+
+    boolean isFilterReady() {
+        return bloomReady;
+    }
+
+    private void revoke(String subject, String tokenId, long expiryEpochMillis) {
         long now = System.currentTimeMillis();
         long ttlMillis = Math.max(expiryEpochMillis - now, 0);
         Duration ttl = Duration.ofMillis(ttlMillis > 0 ? ttlMillis : 3600000); // 1h fallback
 
-        valueOps.set(token, "BLACKLISTED", ttl);
+        String digest = TokenDigest.shortSha256(tokenId);
+        String key = tokenKey(subject, digest);
+        long expiresAt = now + ttl.toMillis();
+        boolean stored = guarded(() -> {
+            revokeTimer.record(() -> valueOps.set(key, REVOKED, ttl));
+            return true;
+        }, () -> false);
+        if (!stored) {
+            pendingTokens.put(key, expiresAt);
+        }
+
+        if (bloomEnabled) {
+            rememberToken(digest, expiresAt);
+            if (stored) publish(TOKEN_MESSAGE + digest + ':' + expiresAt);
+        }
     }
 
-    public boolean isBlacklisted(String token) {
-        if (token == null || token.isBlank()) return false;
-        return redisTemplate.hasKey(token);
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
     }
 
-    @Scheduled(fixedDelayString = "PT5M")
-    public void cleanup() {
+    public boolean isFailClosed() {
+        return failClosed;
+    }
+
+    public int pendingRevocations() {
+        return pendingTokens.size() + pendingWatermarks.size();
+    }
+
+    /**
+     * Runs a Redis call through the circuit breaker; connection errors and command timeouts count as
+     * failures and are answered by the fallback.
+     */
+    private <T> T guarded(Supplier<T> redisCall, Supplier<T> fallback) {
+        return circuitBreaker.call(redisCall, DataAccessException.class, ex -> {
+            long suppressed = ex == null ? -1 : REDIS_FAILURE_LOG.tryAcquire();
+            if (suppressed >= 0) {
+                log.warn("Revocation store call failed, using local fallback: {} (suppressed={})", ex.getMessage(), suppressed);
+            }
+            return fallback.get();
+        });
+    }
+
+    private void publish(String message) {
+        guarded(() -> redisTemplate.convertAndSend(REVOCATION_CHANNEL, message), () -> 0L);
+    }
+
+    private boolean isPendingRevocation(VerifiedToken verified, String digest, String sessionDigest) {
+        if (pendingTokens.isEmpty() && pendingWatermarks.isEmpty()) return false;
+        Long watermark = pendingWatermarks.get(verified.subject());
+        return pendingTokens.containsKey(tokenKey(verified.subject(), digest))
+                || (sessionDigest != null && pendingTokens.containsKey(tokenKey(verified.subject(), sessionDigest)))
+                || (watermark != null && verified.issuedAtMillis() / 1000 < watermark);
+    }
+
+    private boolean isLegacyRevocation(String digest, String sessionDigest) {
+        if (legacyTokens.isEmpty()) return false;
+        return legacyTokens.containsKey(digest) || (sessionDigest != null && legacyTokens.containsKey(sessionDigest));
+    }
+
+    private boolean isLocallyCleared(VerifiedToken verified, String digest, String sessionDigest) {
+        return bloomReady && !mightBeRevoked(digest)
+                && (sessionDigest == null || !mightBeRevoked(sessionDigest))
+                && !isBelowWatermark(verified);
+    }
+
+    private static String sessionDigest(VerifiedToken verified) {
+        return verified.sessionId() == null ? null : TokenDigest.shortSha256(verified.sessionId());
+    }
+
+    /**
+     * Answer for a token Redis could not settle: local state already ruled out the revocations this
+     * replica knows of, so this only decides about the ones it cannot see.
+     */
+    private boolean fallbackDecision() {
+        if (failClosed) {
+            fallbackRejected.increment();
+            return true;
+        }
+        fallbackAccepted.increment();
+        return false;
+    }
+
+    private void onCircuitTransition(CircuitBreaker.State state) {
+        if (state == CircuitBreaker.State.OPEN) {
+            log.error("Revocation store circuit opened - answering from local state ({})",
+                    failClosed ? "fail-closed" : "fail-open");
+        } else if (state == CircuitBreaker.State.CLOSED) {
+            log.info("Revocation store circuit closed - replaying {} pending revocations", pendingRevocations());
+            // fuera del hilo de la petición que cerró el circuito
+            Thread.startVirtualThread(this::replayPending);
+        }
+    }
+
+    /**
+     * Writes the revocations recorded while Redis was unavailable and announces them to the other
+     * replicas. Entries are removed only once written, so a new failure leaves them for the next attempt.
+     */
+    private void replayPending() {
+        if (!replayLock.tryLock()) return;
+        long now = System.currentTimeMillis();
+        int replayed = 0;
+        try {
+            for (Map.Entry<String, Long> entry : pendingTokens.entrySet()) {
+                long ttlMillis = entry.getValue() - now;
+                if (ttlMillis > 0) {
+                    valueOps.set(entry.getKey(), REVOKED, Duration.ofMillis(ttlMillis));
+                    if (bloomEnabled) {
+                        redisTemplate.convertAndSend(REVOCATION_CHANNEL,
+                                TOKEN_MESSAGE + digestOf(entry.getKey()) + ':' + entry.getValue());
+                    }
+                    replayed++;
+                }
+                pendingTokens.remove(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, Long> entry : pendingWatermarks.entrySet()) {
+                raiseWatermark(entry.getKey(), entry.getValue(), watermarkTtl);
+                if (bloomEnabled) {
+                    redisTemplate.convertAndSend(REVOCATION_CHANNEL, USER_MESSAGE + entry.getKey() + ':' + entry.getValue());
+                }
+                pendingWatermarks.remove(entry.getKey(), entry.getValue());
+                replayed++;
+            }
+            if (replayed > 0) {
+                log.info("Replayed {} revocations to Redis", replayed);
+            }
+        } catch (DataAccessException ex) {
+            circuitBreaker.onFailure();
+            log.warn("Replay of pending revocations interrupted, {} left: {}", pendingRevocations(), ex.getMessage());
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    private static Timer redisTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("kerro.blacklist.redis").tag("operation", operation).register(meterRegistry);
+    }
+
+    private int scan(String pattern, Consumer<List<String>> batchConsumer) {
+        int count = 0;
+        List<String> batch = new ArrayList<>(SCAN_BATCH);
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_BATCH).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == SCAN_BATCH) {
+                    batchConsumer.accept(batch);
+                    count += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private void migrateLegacyKeys(List<String> tokens) {
+        List<Long> ttls = pTtls(tokens);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < tokens.size(); i++) {
+            long ttl = ttls.get(i);
+            String subject = legacySubject(tokens.get(i));
+            // son anteriores a jti: JwtService los identifica por el digest del token completo
+            if (subject != null) revoke(subject, TokenDigest.sha256(tokens.get(i)), ttl > 0 ? now + ttl : now);
+        }
+        redisTemplate.delete(tokens);
+    }
+
+    /**
+     * Watermarks written before keys were tagged ({@code rv:u:<subject>}) are moved to
+     * {@link #watermarkKey(String)} with the TTL they had left.
+     */
+    private int migrateLegacyWatermarks(List<String> keys) {
+        List<String> legacy = keys.stream().filter(key -> !key.startsWith(USER_PREFIX + '{')).toList();
+        if (legacy.isEmpty()) return 0;
+        List<String> values = valueOps.multiGet(legacy);
+        List<Long> ttls = pTtls(legacy);
+        for (int i = 0; values != null && i < legacy.size(); i++) {
+            if (values.get(i) != null) {
+                long ttl = ttls.get(i);
+                raiseWatermark(legacy.get(i).substring(USER_PREFIX.length()), Long.parseLong(values.get(i)),
+                        ttl > 0 ? Duration.ofMillis(ttl) : watermarkTtl);
+            }
+        }
+        redisTemplate.delete(legacy);
+        return legacy.size();
+    }
+
+    // no bajar un watermark más reciente escrito por otra réplica
+    private void raiseWatermark(String subject, long watermark, Duration ttl) {
+        String key = watermarkKey(subject);
+        String current = valueOps.get(key);
+        if (current == null || Long.parseLong(current) < watermark) {
+            valueOps.set(key, Long.toString(watermark), ttl);
+        }
+    }
+
+    /**
+     * Key of the user's "issued before" watermark, with the subject as hash tag.
+     */
+    public static String watermarkKey(String subject) {
+        return USER_PREFIX + '{' + subject + '}';
+    }
+
+    /**
+     * Key of a revoked token or session, with the subject as hash tag like {@link #watermarkKey(String)}.
+     */
+    public static String tokenKey(String subject, String digest) {
+        return TOKEN_PREFIX + '{' + subject + "}:" + digest;
+    }
+
+    // también vale para las claves sin etiquetar: el digest en base64url no lleva ':'
+    private static String digestOf(String tokenKey) {
+        return tokenKey.substring(tokenKey.lastIndexOf(':') + 1);
+    }
+
+    private static boolean isLegacyTokenKey(String key) {
+        return key.length() > TOKEN_PREFIX.length() && key.charAt(TOKEN_PREFIX.length()) != '{';
+    }
+
+    /**
+     * Reads {@code sub} from the payload of a token stored whole by the first versions, which only stored
+     * tokens they had verified.
+     */
+    private static String legacySubject(String token) {
+        String[] segments = token.split("\\.");
+        if (segments.length != 3) return null;
+        try {
+            return LEGACY_READER.readTree(Base64.getUrlDecoder().decode(segments[1])).path("sub").textValue();
+        } catch (IOException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static String subjectOf(String watermarkKey) {
+        return watermarkKey.substring(USER_PREFIX.length() + 1, watermarkKey.length() - 1);
+    }
+
+    private void loadTokens(List<String> keys, long now) {
+        List<Long> ttls = pTtls(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            long ttl = ttls.get(i);
+            long expiresAt = ttl > 0 ? now + ttl : now + generationMillis;
+            rememberToken(digestOf(keys.get(i)), expiresAt);
+            if (isLegacyTokenKey(keys.get(i))) legacyTokens.put(digestOf(keys.get(i)), expiresAt);
+        }
+    }
+
+    private void loadLegacyTokens(List<String> keys, long now) {
+        List<String> legacy = keys.stream().filter(TokenBlacklistService::isLegacyTokenKey).toList();
+        if (legacy.isEmpty()) return;
+        List<Long> ttls = pTtls(legacy);
+        for (int i = 0; i < legacy.size(); i++) {
+            long ttl = ttls.get(i);
+            legacyTokens.put(digestOf(legacy.get(i)), ttl > 0 ? now + ttl : now + maxTokenLifetimeMillis);
+        }
+    }
+
+    private void loadWatermarks(List<String> keys) {
+        List<String> values = valueOps.multiGet(keys);
+        for (int i = 0; values != null && i < keys.size(); i++) {
+            if (values.get(i) != null) {
+                rememberWatermark(subjectOf(keys.get(i)), Long.parseLong(values.get(i)));
+            }
+        }
+    }
+
+    private List<Long> pTtls(List<String> keys) {
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                pTtl(connection, key);
+            }
+            return null;
+        });
+        List<Long> ttls = new ArrayList<>(results.size());
+        for (Object result : results) {
+            ttls.add(result instanceof Long value ? value : -1L);
+        }
+        return ttls;
+    }
+
+    private static void pTtl(RedisConnection connection, String key) {
+        connection.keyCommands().pTtl(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void rememberToken(String digest, long expiresAtMillis) {
+        long generationEnd = Math.ceilDiv(expiresAtMillis, generationMillis) * generationMillis;
+        generations.computeIfAbsent(generationEnd, end -> new BloomFilter(expectedInsertions, falsePositiveRate))
+                .put(digest);
+    }
+
+    private void rememberWatermark(String subject, long watermark) {
+        watermarks.merge(subject, watermark, Math::max);
+    }
+
+    private boolean mightBeRevoked(String digest) {
+        for (BloomFilter generation : generations.tailMap(System.currentTimeMillis()).values()) {
+            if (generation.mightContain(digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBelowWatermark(VerifiedToken verified) {
+        Long watermark = watermarks.get(verified.subject());
+        return watermark != null && verified.issuedAtMillis() / 1000 < watermark;
     }
 }
@@ -0,0 +1,83 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.dto.IntrospectionResultDTO;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validates many tokens in one call, running the same stages as {@link JwtAuthenticationFilter}
+ * but with a single revocation lookup for the whole batch.
+ */
+@Service
+public class TokenIntrospectionService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenIntrospectionService.class);
+
+    private final JwtService jwtService;
+    private final TokenBlacklistService tokenBlacklistService;
+    private final RejectedTokenCache rejectedTokenCache;
+    private final int maxBatchSize;
+
+    public TokenIntrospectionService(JwtService jwtService,
+                                     TokenBlacklistService tokenBlacklistService,
+                                     RejectedTokenCache rejectedTokenCache,
+                                     @Value("${security.introspection.max-batch-size}") int maxBatchSize) {
+        this.jwtService = jwtService;
+        this.tokenBlacklistService = tokenBlacklistService;
+        this.rejectedTokenCache = rejectedTokenCache;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns one result per token, in the same order.
+     */
+    public List<IntrospectionResultDTO> introspect(List<String> tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            throw new IllegalArgumentException("No tokens provided");
+        }
+        if (tokens.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " tokens per request");
+        }
+
+        VerifiedToken[] verified = new VerifiedToken[tokens.size()];
+        String[] digests = new String[tokens.size()];
+        List<VerifiedToken> candidates = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token != null && token.startsWith("Bearer ")) {
+                token = token.substring(7).trim();
+            }
+            if (token == null || !JwtCodec.isWellFormed(token)) continue;
+            digests[i] = TokenDigest.sha256(token);
+            if (rejectedTokenCache.get(digests[i]) != null) continue;
+            try {
+                verified[i] = jwtService.verify(token, digests[i]);
+                candidates.add(verified[i]);
+            } catch (Exception ex) {
+                log.debug("Introspected token rejected: {}", ex.getMessage());
+                rejectedTokenCache.put(digests[i], TokenRejection.of(ex));
+            }
+        }
+
+        boolean[] revoked = candidates.isEmpty() ? new boolean[0] : tokenBlacklistService.areBlacklisted(candidates);
+        List<IntrospectionResultDTO> results = new ArrayList<>(tokens.size());
+        int candidate = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (verified[i] == null) {
+                results.add(IntrospectionResultDTO.inactive());
+            } else if (revoked[candidate++]) {
+                rejectedTokenCache.put(digests[i], TokenRejection.REVOKED);
+                results.add(IntrospectionResultDTO.inactive());
+            } else {
+                results.add(IntrospectionResultDTO.active(verified[i]));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,28 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+/**
+ * Why a bearer token was refused by {@link JwtAuthenticationFilter}.
+ */
+public enum TokenRejection {
+    MALFORMED,
+    INVALID_SIGNATURE,
+    EXPIRED,
+    REVOKED;
+
+    public static TokenRejection of(Exception ex) {
+        if (ex instanceof ExpiredJwtException) return EXPIRED;
+        if (ex instanceof SignatureException || ex instanceof UnsupportedJwtException) return INVALID_SIGNATURE;
+        return MALFORMED;
+    }
+
+    /**
+     * Value of the {@code outcome} metric tag; a valid token is tagged {@code valid}.
+     */
+    public String tag() {
+        return this == REVOKED ? "blacklisted" : name().toLowerCase();
+    }
+}
@@ -0,0 +1,33 @@
+package com.kerro.kerroauthenticator.jwt;
+
+/**
+ * Immutable claim set of a token issued by this service. Instances returned by
+ * {@link JwtService#verify(String)} have already passed signature and expiry checks.
+ * {@code userId}, {@code role} and {@code flags} are null on tokens issued before they were embedded.
+ * {@code tokenId} is the {@code jti} claim, or the digest of the whole token for tokens issued without one.
+ * {@code sessionId} is the {@code sid} claim: the refresh token family the token was issued for, null on
+ * tokens issued before sessions were tracked.
+ */
+public record VerifiedToken(String subject, String tokenId, String sessionId, Long userId, String role,
+                            Integer flags, long issuedAtMillis, long expiresAtMillis) {
+
+    /** Request attribute under which {@link JwtAuthenticationFilter} shares the verified token. */
+    public static final String REQUEST_ATTRIBUTE = "com.kerro.kerroauthenticator.jwt.VerifiedToken";
+
+    public VerifiedToken(String subject, String tokenId, Long userId, String role, Integer flags,
+                         long issuedAtMillis, long expiresAtMillis) {
+        this(subject, tokenId, null, userId, role, flags, issuedAtMillis, expiresAtMillis);
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+
+    public boolean hasPrincipalClaims() {
+        return subject != null && userId != null && role != null && flags != null;
+    }
+
+    public VerifiedToken withTokenId(String id) {
+        return new VerifiedToken(subject, id, sessionId, userId, role, flags, issuedAtMillis, expiresAtMillis);
+    }
+}
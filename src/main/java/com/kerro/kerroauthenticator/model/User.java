@@ -1,24 +1,35 @@
 // java
 package com.kerro.kerroauthenticator.model;
 
+import com.kerro.kerroauthenticator.security.AuthenticatedUser;
+import com.kerro.kerroauthenticator.security.UserCacheListener;
+import com.kerro.kerroauthenticator.utils.Identifiers;
 import jakarta.persistence.*;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
-public class User implements UserDetails {
+@EntityListeners(UserCacheListener.class)
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username_normalized"),
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email_normalized")
+})
+public class User implements AuthenticatedUser {
+
+    public static final String USERNAME_CONSTRAINT = "uk_users_username_normalized";
+    public static final String EMAIL_CONSTRAINT = "uk_users_email_normalized";
+    // Debe coincidir con el INCREMENT BY de user_seq (ver db/migration)
+    public static final int ID_ALLOCATION_SIZE = 50;
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
-    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 1)
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String username;
 
     @Column(nullable = false)
@@ -27,6 +38,13 @@ public class User implements UserDetails {
     @Column(nullable = false)
     private String email;
 
+    // Formas canónicas (Identifiers.normalize) que se escriben junto al valor original; los logins las buscan por igualdad
+    @Column(name = "username_normalized", nullable = false)
+    private String usernameNormalized;
+
+    @Column(name = "email_normalized", nullable = false)
+    private String emailNormalized;
+
     @Column(nullable = true)
     private String role;
 
@@ -55,12 +73,20 @@ public class User implements UserDetails {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
-    public void setEmail(String email) { this.email = email; }
+    public void setEmail(String email) {
+        this.email = email;
+        this.emailNormalized = Identifiers.normalize(email);
+    }
     public void setPassword(String password) { this.password = password; }
-    public void setUsername(String username) { this.username = username; }
+    public void setUsername(String username) {
+        this.username = username;
+        this.usernameNormalized = Identifiers.normalize(username);
+    }
     public void setRole(String role) { this.role = role; }
 
     public String getEmail() { return email; }
+    public String getUsernameNormalized() { return usernameNormalized; }
+    public String getEmailNormalized() { return emailNormalized; }
     public String getRole() { return role; }
 
     @Override
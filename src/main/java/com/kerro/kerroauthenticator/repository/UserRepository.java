@@ -1,7 +1,12 @@
 package com.kerro.kerroauthenticator.repository;
 
+import com.kerro.kerroauthenticator.dto.UserDTO;
 import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.utils.Identifiers;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,9 +15,40 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends CrudRepository<User,Long> {
 
-    Optional<User> findByEmail(String email);
-    Optional<User> findByUsername(String name);
-    Optional<User> findByUsernameOrEmail(String username, String email);
+    Optional<User> findByUsernameNormalized(String usernameNormalized);
+    Optional<User> findByEmailNormalized(String emailNormalized);
     Optional<User> findByRole(String role);
-    List<User> findNombreByUsernameContainingIgnoreCase(String username);
+
+    /**
+     * Keyset page of users whose normalized username matches the LIKE pattern, projected straight into the DTO.
+     * Served by the trigram index of V4; the pattern must already be normalized, with wildcards escaped by a backslash.
+     */
+    @Query("""
+            select new com.kerro.kerroauthenticator.dto.UserDTO(u.id, u.username, u.email, u.role)
+            from User u
+            where u.usernameNormalized like :pattern escape '\\' and u.id > :afterId
+            order by u.id""")
+    List<UserDTO> searchByUsername(@Param("pattern") String pattern, @Param("afterId") long afterId, Limit limit);
+
+    /** Same as {@link #searchByUsername} over the normalized email. */
+    @Query("""
+            select new com.kerro.kerroauthenticator.dto.UserDTO(u.id, u.username, u.email, u.role)
+            from User u
+            where u.emailNormalized like :pattern escape '\\' and u.id > :afterId
+            order by u.id""")
+    List<UserDTO> searchByEmail(@Param("pattern") String pattern, @Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Resolves a username or email with one equality lookup on the unique index of the column its shape
+     * points to; usernames cannot contain '@'.
+     */
+    default Optional<User> findByIdentifier(String identifier) {
+        String normalized = Identifiers.normalize(identifier);
+        if (normalized == null || normalized.isEmpty()) {
+            return Optional.empty();
+        }
+        return Identifiers.isEmail(normalized)
+                ? findByEmailNormalized(normalized)
+                : findByUsernameNormalized(normalized);
+    }
 }
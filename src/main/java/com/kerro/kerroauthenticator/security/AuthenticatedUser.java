@@ -0,0 +1,15 @@
+package com.kerro.kerroauthenticator.security;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Principal placed in the security context by the JWT filter: either the {@link CachedUser} snapshot of the user
+ * or a {@link TokenPrincipal} built from the token claims. Both already carry what the profile endpoints
+ * return, so those endpoints never need to load the user again.
+ */
+public interface AuthenticatedUser extends UserDetails {
+
+    Long getId();
+
+    String getRole();
+}
@@ -0,0 +1,71 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.kerro.kerroauthenticator.model.User;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable copy of a {@link User} held by {@link UserDetailsCache}. The managed entity is never cached:
+ * it could be modified by the request that loaded it and shared half-written with every other thread.
+ */
+public final class CachedUser implements AuthenticatedUser {
+
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String usernameNormalized;
+    private final String emailNormalized;
+    private final String password;
+    private final String role;
+    private final int flags;
+    private final List<GrantedAuthority> authorities;
+
+    private CachedUser(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.usernameNormalized = user.getUsernameNormalized();
+        this.emailNormalized = user.getEmailNormalized();
+        this.password = user.getPassword();
+        this.role = user.getRole();
+        this.flags = TokenPrincipal.flagsOf(user);
+        this.authorities = List.copyOf(user.getAuthorities());
+    }
+
+    public static CachedUser of(User user) {
+        return new CachedUser(user);
+    }
+
+    public Long getId() { return id; }
+
+    public String getEmail() { return email; }
+
+    public String getUsernameNormalized() { return usernameNormalized; }
+
+    public String getEmailNormalized() { return emailNormalized; }
+
+    public String getRole() { return role; }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() { return authorities; }
+
+    @Override
+    public String getPassword() { return password; }
+
+    @Override
+    public String getUsername() { return username; }
+
+    @Override
+    public boolean isAccountNonExpired() { return (flags & TokenPrincipal.ACCOUNT_NON_EXPIRED) != 0; }
+
+    @Override
+    public boolean isAccountNonLocked() { return (flags & TokenPrincipal.ACCOUNT_NON_LOCKED) != 0; }
+
+    @Override
+    public boolean isCredentialsNonExpired() { return (flags & TokenPrincipal.CREDENTIALS_NON_EXPIRED) != 0; }
+
+    @Override
+    public boolean isEnabled() { return (flags & TokenPrincipal.ENABLED) != 0; }
+}
@@ -0,0 +1,96 @@
+package com.kerro.kerroauthenticator.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+/**
+ * BCrypt encoder whose work factor can be chosen from the hardware it runs on.
+ * <p>
+ * The calibrated cost only applies to new hashes. Whether a stored hash is re-encoded is decided
+ * against a floor that comes from configuration and is the same on every replica: only hashes below
+ * it are upgraded, never downgraded. Replicas calibrated to different costs therefore leave each
+ * other's hashes alone instead of rehashing the same password back and forth on every login.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final int strength;
+    private final int upgradeFloor;
+
+    /**
+     * Fixed cost for the whole fleet: hashes below it are upgraded to it.
+     */
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        this(strength, strength);
+    }
+
+    public CalibratedBCryptPasswordEncoder(int strength, int upgradeFloor) {
+        super(strength);
+        if (upgradeFloor > strength) {
+            throw new IllegalArgumentException("Upgrade floor " + upgradeFloor + " is above the cost " + strength);
+        }
+        this.strength = strength;
+        this.upgradeFloor = upgradeFloor;
+    }
+
+    /**
+     * Picks the highest cost in [minStrength, maxStrength] whose hash time on this machine
+     * stays within the target. Each extra cost unit doubles the hashing time. Stored hashes are
+     * only upgraded when below {@code minStrength}, which every replica shares.
+     */
+    public static CalibratedBCryptPasswordEncoder calibrate(Duration target, int minStrength, int maxStrength) {
+        long targetNanos = target.toNanos();
+        // primera ejecución descartada para calentar el JIT
+        new BCryptPasswordEncoder(minStrength).encode(CALIBRATION_PASSWORD);
+
+        int strength = minStrength;
+        long elapsed = measure(strength);
+        while (strength < maxStrength && elapsed * 2 <= targetNanos) {
+            strength++;
+            elapsed = measure(strength);
+        }
+        if (elapsed > targetNanos && strength > minStrength) {
+            strength--;
+        }
+        log.info("BCrypt cost calibrated to {} (~{} ms per hash, target {} ms)",
+                strength, Duration.ofNanos(elapsed).toMillis(), target.toMillis());
+        return new CalibratedBCryptPasswordEncoder(strength, minStrength);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    public int getUpgradeFloor() {
+        return upgradeFloor;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // $2a$10$...: el coste son los dos dígitos tras el prefijo de versión
+        if (encodedPassword == null || encodedPassword.length() < 7 || !encodedPassword.startsWith("$2")) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) < upgradeFloor;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static long measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
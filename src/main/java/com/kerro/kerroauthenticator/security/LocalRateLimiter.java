@@ -0,0 +1,44 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process token buckets implemented as GCRA: each bucket is a single theoretical arrival
+ * time updated with one CAS, so concurrent requests never take a lock. Buckets idle for longer
+ * than a full refill are evicted, and the total number of keys is capped.
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private final Cache<String, AtomicLong> buckets;
+
+    public LocalRateLimiter(long maximumKeys, Duration idleEviction) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(idleEviction)
+                .build();
+    }
+
+    @Override
+    public long tryAcquire(String key, RateLimit limit) {
+        AtomicLong tat = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        long interval = limit.emissionIntervalNanos();
+        long burst = limit.burstNanos();
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long newTat = Math.max(current, now) + interval;
+            long allowAt = newTat - burst;
+            if (allowAt > now) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(allowAt - now));
+            }
+            if (tat.compareAndSet(current, newTat)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.kerro.kerroauthenticator.exception.TooManyRequestsException;
+import com.kerro.kerroauthenticator.utils.Identifiers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles /login and /signup by client IP and by normalized identifier, and /refresh by client IP with the
+ * login limits. Checked before any database lookup, password hash or Redis script, so a credential-stuffing
+ * attempt is refused in microseconds.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final RateLimiter rateLimiter;
+    private final RateLimit loginPerIp;
+    private final RateLimit loginPerIdentifier;
+    private final RateLimit refreshPerIp;
+    private final RateLimit signupPerIp;
+
+    public LoginThrottle(RedisTemplate<String, String> redisTemplate,
+                         @Value("${security.throttle.enabled}") boolean enabled,
+                         @Value("${security.throttle.mode}") String mode,
+                         @Value("${security.throttle.maximum-keys}") long maximumKeys,
+                         @Value("${security.throttle.login.ip.capacity}") int loginIpCapacity,
+                         @Value("${security.throttle.login.ip.period}") Duration loginIpPeriod,
+                         @Value("${security.throttle.login.identifier.capacity}") int loginIdCapacity,
+                         @Value("${security.throttle.login.identifier.period}") Duration loginIdPeriod,
+                         @Value("${security.throttle.signup.ip.capacity}") int signupIpCapacity,
+                         @Value("${security.throttle.signup.ip.period}") Duration signupIpPeriod) {
+        this.enabled = enabled;
+        this.loginPerIp = new RateLimit("login-ip", loginIpCapacity, loginIpPeriod);
+        this.loginPerIdentifier = new RateLimit("login-id", loginIdCapacity, loginIdPeriod);
+        // cubo propio: los refresh legítimos no gastan intentos de login
+        this.refreshPerIp = new RateLimit("refresh-ip", loginIpCapacity, loginIpPeriod);
+        this.signupPerIp = new RateLimit("signup-ip", signupIpCapacity, signupIpPeriod);
+
+        Duration longestRefill = max(loginIpPeriod, max(loginIdPeriod, signupIpPeriod));
+        this.rateLimiter = "redis".equalsIgnoreCase(mode)
+                ? new RedisRateLimiter(redisTemplate)
+                : new LocalRateLimiter(maximumKeys, longestRefill);
+    }
+
+    public void checkLogin(String clientIp, String identifier) {
+        if (!enabled) return;
+        acquire(loginPerIp, clientIp);
+        if (identifier != null && !identifier.isBlank()) {
+            acquire(loginPerIdentifier, Identifiers.normalize(identifier));
+        }
+    }
+
+    public void checkRefresh(String clientIp) {
+        if (!enabled) return;
+        acquire(refreshPerIp, clientIp);
+    }
+
+    public void checkSignup(String clientIp) {
+        if (!enabled) return;
+        acquire(signupPerIp, clientIp);
+    }
+
+    private void acquire(RateLimit limit, String key) {
+        long waitMillis = rateLimiter.tryAcquire(limit.name() + ':' + key, limit);
+        if (waitMillis > 0) {
+            long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999));
+            throw new TooManyRequestsException("Too many attempts, please retry later", retryAfter);
+        }
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
@@ -0,0 +1,17 @@
+package com.kerro.kerroauthenticator.security;
+
+import java.time.Duration;
+
+/**
+ * Token bucket of {@code capacity} tokens refilled evenly over {@code period}.
+ */
+public record RateLimit(String name, int capacity, Duration period) {
+
+    public long emissionIntervalNanos() {
+        return period.toNanos() / capacity;
+    }
+
+    public long burstNanos() {
+        return emissionIntervalNanos() * capacity;
+    }
+}
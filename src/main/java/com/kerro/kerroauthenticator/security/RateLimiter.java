@@ -0,0 +1,11 @@
+package com.kerro.kerroauthenticator.security;
+
+public interface RateLimiter {
+
+    /**
+     * Takes one token from the bucket of {@code key}.
+     *
+     * @return 0 if the call is allowed, otherwise the milliseconds until a token is available
+     */
+    long tryAcquire(String key, RateLimit limit);
+}
@@ -0,0 +1,52 @@
+package com.kerro.kerroauthenticator.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * GCRA token buckets stored in Redis so limits hold across replicas. If Redis is unavailable
+ * the call is allowed rather than locking every user out.
+ */
+public class RedisRateLimiter implements RateLimiter {
+
+    public static final String KEY_PREFIX = "rl:";
+
+    /** KEYS[1] bucket, ARGV[1] emission interval ms, ARGV[2] burst ms. Returns ms to wait, 0 if allowed. */
+    public static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>("""
+            local t = redis.call('TIME')
+            local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)
+            local tat = tonumber(redis.call('GET', KEYS[1]) or now)
+            if tat < now then tat = now end
+            local newTat = tat + tonumber(ARGV[1])
+            local allowAt = newTat - tonumber(ARGV[2])
+            if allowAt > now then return allowAt - now end
+            redis.call('SET', KEYS[1], newTat, 'PX', newTat - now)
+            return 0
+            """, Long.class);
+
+    private static final Logger log = LoggerFactory.getLogger(RedisRateLimiter.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    public RedisRateLimiter(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public long tryAcquire(String key, RateLimit limit) {
+        try {
+            Long wait = redisTemplate.execute(ACQUIRE, List.of(KEY_PREFIX + key),
+                    Long.toString(Math.max(1, limit.period().toMillis() / limit.capacity())),
+                    Long.toString(limit.period().toMillis()));
+            return wait == null ? 0 : wait;
+        } catch (Exception ex) {
+            log.warn("Rate limiter unavailable, allowing request: {}", ex.getMessage());
+            return 0;
+        }
+    }
+}
@@ -4,6 +4,7 @@ package com.kerro.kerroauthenticator.security;
 import com.kerro.kerroauthenticator.jwt.CustomAuthenticationEntryPoint;
 import com.kerro.kerroauthenticator.jwt.JwtAuthenticationFilter;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,6 +15,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.expression.WebExpressionAuthorizationManager;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -27,10 +29,13 @@ public class SecurityConfiguration {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final CustomAuthenticationEntryPoint customAuthenticationEntryPoint;
+    private final List<String> metricsNetworks;
 
-    public SecurityConfiguration(JwtAuthenticationFilter jwtAuthenticationFilter, CustomAuthenticationEntryPoint customAuthenticationEntryPoint) {
+    public SecurityConfiguration(JwtAuthenticationFilter jwtAuthenticationFilter, CustomAuthenticationEntryPoint customAuthenticationEntryPoint,
+                                 @Value("${security.metrics.allowed-networks}") List<String> metricsNetworks) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
         this.customAuthenticationEntryPoint = customAuthenticationEntryPoint;
+        this.metricsNetworks = metricsNetworks;
     }
 
     @Bean
@@ -39,8 +44,13 @@ public class SecurityConfiguration {
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/v1/auth/signup", "/api/v1/auth/login").permitAll()
+                        .requestMatchers("/api/v1/auth/signup", "/api/v1/auth/login", "/api/v1/auth/refresh",
+                                "/.well-known/jwks.json").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").access(actuatorAccess())
                         .requestMatchers("/api/v1/auth/logout").authenticated()
+                        .requestMatchers("/api/v1/auth/introspect").hasAnyRole("admin", "service")
+                        .requestMatchers("/api/v1/admin/**").hasRole("admin")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -54,6 +64,17 @@ public class SecurityConfiguration {
         return http.build();
     }
 
+    // Métricas: tokens de admin o de servicio, o sin token desde las redes del scraper
+    private WebExpressionAuthorizationManager actuatorAccess() {
+        StringBuilder expression = new StringBuilder("hasAnyRole('admin', 'service')");
+        for (String network : metricsNetworks) {
+            if (!network.isBlank()) {
+                expression.append(" or hasIpAddress('").append(network.trim()).append("')");
+            }
+        }
+        return new WebExpressionAuthorizationManager(expression.toString());
+    }
+
     // Crear el AuthenticationManager solo si no existe otro bean con ese tipo
     @Bean
     @ConditionalOnMissingBean(AuthenticationManager.class)
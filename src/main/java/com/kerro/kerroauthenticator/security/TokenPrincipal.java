@@ -0,0 +1,67 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.kerro.kerroauthenticator.jwt.VerifiedToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lightweight principal built only from the claims of a verified token, used when
+ * claims-only authentication is enabled so the request never touches the database.
+ */
+public class TokenPrincipal implements AuthenticatedUser {
+
+    public static final int ACCOUNT_NON_EXPIRED = 1;
+    public static final int ACCOUNT_NON_LOCKED = 1 << 1;
+    public static final int CREDENTIALS_NON_EXPIRED = 1 << 2;
+    public static final int ENABLED = 1 << 3;
+
+    private final Long id;
+    private final String username;
+    private final String role;
+    private final int flags;
+    private final List<GrantedAuthority> authorities;
+
+    public TokenPrincipal(VerifiedToken token) {
+        this.id = token.userId();
+        this.username = token.subject();
+        this.role = token.role();
+        this.flags = token.flags();
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role));
+    }
+
+    public static int flagsOf(UserDetails user) {
+        return (user.isAccountNonExpired() ? ACCOUNT_NON_EXPIRED : 0)
+                | (user.isAccountNonLocked() ? ACCOUNT_NON_LOCKED : 0)
+                | (user.isCredentialsNonExpired() ? CREDENTIALS_NON_EXPIRED : 0)
+                | (user.isEnabled() ? ENABLED : 0);
+    }
+
+    public Long getId() { return id; }
+
+    public String getRole() { return role; }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() { return authorities; }
+
+    @Override
+    public String getPassword() { return null; }
+
+    @Override
+    public String getUsername() { return username; }
+
+    @Override
+    public boolean isAccountNonExpired() { return (flags & ACCOUNT_NON_EXPIRED) != 0; }
+
+    @Override
+    public boolean isAccountNonLocked() { return (flags & ACCOUNT_NON_LOCKED) != 0; }
+
+    @Override
+    public boolean isCredentialsNonExpired() { return (flags & CREDENTIALS_NON_EXPIRED) != 0; }
+
+    @Override
+    public boolean isEnabled() { return (flags & ENABLED) != 0; }
+}
@@ -0,0 +1,47 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.kerro.kerroauthenticator.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener of {@link User} that evicts it from the {@link UserDetailsCache} on every update or delete,
+ * whoever makes the change. Hibernate creates it through Spring, which injects the cache.
+ * <p>
+ * The eviction waits for the commit: evicting on flush would let a concurrent lookup load the old row
+ * again before the transaction is visible and cache it for the whole TTL.
+ */
+public class UserCacheListener {
+
+    // diferido: el EntityManagerFactory crea el listener antes de que exista la caché, que depende de él
+    private final ObjectProvider<UserDetailsCache> userDetailsCache;
+
+    public UserCacheListener(ObjectProvider<UserDetailsCache> userDetailsCache) {
+        this.userDetailsCache = userDetailsCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    void onChange(User user) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(user);
+                }
+            });
+        } else {
+            invalidate(user);
+        }
+    }
+
+    private void invalidate(User user) {
+        UserDetailsCache cache = userDetailsCache.getIfAvailable();
+        if (cache != null) {
+            cache.invalidate(user);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.repository.UserRepository;
+import com.kerro.kerroauthenticator.utils.Identifiers;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process near-cache of users keyed by both normalized username and normalized email.
+ * Entries are {@link CachedUser} snapshots, never the managed entity.
+ * <p>
+ * Every JPA update or delete of a user evicts it once the transaction commits (see {@link UserCacheListener}),
+ * and the eviction is broadcast on a Redis channel so every replica drops its copy. Eviction also goes by id,
+ * through an index of the keys each user is cached under, so a renamed user does not stay cached under the
+ * old name. Absent users are not cached, so inserts, including the JDBC ones of the bulk import, need no
+ * eviction.
+ */
+@Component
+public class UserDetailsCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "kerro:users:invalidate";
+
+    private static final Logger log = LoggerFactory.getLogger(UserDetailsCache.class);
+    private static final char SEPARATOR = '\n';
+
+    private final Cache<String, CachedUser> cache;
+    // claves bajo las que está cada usuario, para desalojarlo por id sin recorrer la caché
+    private final Map<Long, Set<String>> keysById = new ConcurrentHashMap<>();
+    private final UserRepository userRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    public UserDetailsCache(UserRepository userRepository,
+                            RedisTemplate<String, String> redisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            MeterRegistry meterRegistry,
+                            @Value("${security.user-cache.ttl}") Duration ttl,
+                            @Value("${security.user-cache.maximum-size}") long maximumSize) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .recordStats()
+                // síncrono con el desalojo por tamaño o caducidad, antes de que la clave se vuelva a cargar
+                .evictionListener((String key, CachedUser user, RemovalCause cause) -> unindex(key, user))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users.details");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public Optional<CachedUser> find(String usernameOrEmail) {
+        String key = Identifiers.normalize(usernameOrEmail);
+        if (key == null || key.isEmpty()) {
+            return Optional.empty();
+        }
+        CachedUser user = cache.get(key, k -> userRepository.findByIdentifier(k).map(CachedUser::of).orElse(null));
+        if (user != null) {
+            // el mismo usuario queda accesible por la otra clave
+            String otherKey = key.equals(user.getUsernameNormalized()) ? user.getEmailNormalized() : user.getUsernameNormalized();
+            if (otherKey != null) {
+                cache.put(otherKey, user);
+            }
+            index(user.getId(), key, otherKey);
+        }
+        return Optional.ofNullable(user);
+    }
+
+    /**
+     * Evicts the user locally and tells the other replicas to do the same.
+     */
+    public void invalidate(User user) {
+        evict(user.getId(), user.getUsername(), user.getEmail());
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL,
+                    user.getUsername() + SEPARATOR + user.getEmail() + SEPARATOR + user.getId());
+        } catch (Exception ex) {
+            log.warn("Could not publish user cache invalidation for {}: {}", user.getUsername(), ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] fields = new String(message.getBody(), StandardCharsets.UTF_8).split(String.valueOf(SEPARATOR), 3);
+        Long id = fields.length > 2 && !fields[2].equals("null") ? Long.valueOf(fields[2]) : null;
+        evict(id, fields[0], fields.length > 1 ? fields[1] : null);
+    }
+
+    private void evict(Long id, String username, String email) {
+        if (username != null) cache.invalidate(Identifiers.normalize(username));
+        if (email != null) cache.invalidate(Identifiers.normalize(email));
+        // claves anteriores de un usuario renombrado: solo se llega a ellas por el id
+        if (id != null) {
+            Set<String> keys = keysById.remove(id);
+            if (keys != null) cache.invalidateAll(keys);
+        }
+    }
+
+    private void index(Long id, String key, String otherKey) {
+        if (id == null) return;
+        keysById.compute(id, (k, keys) -> {
+            Set<String> indexed = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            indexed.add(key);
+            if (otherKey != null) indexed.add(otherKey);
+            return indexed;
+        });
+    }
+
+    private void unindex(String key, CachedUser user) {
+        if (key == null || user == null || user.getId() == null) return;
+        keysById.computeIfPresent(user.getId(), (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+}
@@ -3,71 +3,77 @@ package com.kerro.kerroauthenticator.service;
 
 import com.kerro.kerroauthenticator.dto.LoginUserDTO;
 import com.kerro.kerroauthenticator.dto.RegisterUserDTO;
+import com.kerro.kerroauthenticator.exception.AuthenticationFailedException;
+import com.kerro.kerroauthenticator.exception.TooManyRequestsException;
 import com.kerro.kerroauthenticator.exception.user.EmailAlreadyExistException;
 import com.kerro.kerroauthenticator.exception.user.UserAlreadyExistException;
 import com.kerro.kerroauthenticator.exception.user.UserException;
 import com.kerro.kerroauthenticator.exception.user.UserNotFoundException;
 import com.kerro.kerroauthenticator.model.User;
 import com.kerro.kerroauthenticator.repository.UserRepository;
+import com.kerro.kerroauthenticator.security.AuthenticatedUser;
+import com.kerro.kerroauthenticator.security.UserDetailsCache;
 import com.kerro.kerroauthenticator.utils.Constantes;
+import com.kerro.kerroauthenticator.utils.Identifiers;
+import com.kerro.kerroauthenticator.utils.LogSampler;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 @Service
 public class AuthenticationService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationConfiguration authenticationConfiguration;
+    private final UserDetailsCache userDetailsCache;
     private static final Logger log = LoggerFactory.getLogger(AuthenticationService.class);
+    // usuario inexistente o contraseña incorrecta: lo repite cualquier ataque de fuerza bruta
+    private static final LogSampler FAILED_LOGIN_LOG = new LogSampler(20, Duration.ofSeconds(10));
 
     public AuthenticationService(UserRepository userRepository,
                                  PasswordEncoder passwordEncoder,
-                                 AuthenticationConfiguration authenticationConfiguration) {
+                                 AuthenticationConfiguration authenticationConfiguration,
+                                 UserDetailsCache userDetailsCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationConfiguration = authenticationConfiguration;
+        this.userDetailsCache = userDetailsCache;
     }
 
     public void signup(RegisterUserDTO input) {
-        log.info(": {}", input.getUsername());
+        log.debug("Signup request for: {}", input.getUsername());
 
         if (input.getUsername() == null || input.getUsername().isEmpty()) {
             log.error(Constantes.OBJETOVACIO);
             throw new IllegalArgumentException("Username is empty");
         }
 
+        // el login elige la columna por la forma del identificador: un username con @ no se podría encontrar
+        if (Identifiers.isEmail(input.getUsername())) {
+            log.error("Username contains @");
+            throw new IllegalArgumentException("Username cannot contain @");
+        }
+
         if (input.getEmail() == null || input.getEmail().isEmpty()) {
             log.error("Email is empty");
             throw new IllegalArgumentException("Email is empty");
         }
 
-        if (userRepository.findByEmail(input.getEmail()).isPresent()) {
-            log.warn("Attempt to register with an existing email: {}", input.getEmail());
-            throw new EmailAlreadyExistException(input.getEmail());
-        }
-
         if (input.getPassword() == null || input.getPassword().isEmpty()) {
             log.error(Constantes.PASSWORDNULO);
             throw new IllegalArgumentException("Password is empty");
         }
 
-        userRepository.findByUsernameOrEmail(input.getUsername(), input.getEmail()).ifPresent(existingUser -> {
-            if (existingUser.getUsername().equals(input.getUsername())) {
-                log.warn("Username already exists: {}", input.getUsername());
-                throw new UserAlreadyExistException("Username is already in use: " + input.getUsername());
-            }
-            if (existingUser.getEmail().equals(input.getEmail())) {
-                log.warn("Email alredy exists: {}", input.getEmail());
-                throw new EmailAlreadyExistException("Email is alredy in use: " + input.getEmail());
-            }
-        });
-
+        // Sin consultas previas: las restricciones únicas de users detectan los duplicados en el INSERT
         try {
             User user = new User();
             user.setUsername(input.getUsername());
@@ -77,14 +83,42 @@ public class AuthenticationService {
 
             user = userRepository.save(user);
             log.info("User successfully registered: {}", user.getUsername());
+        } catch (DataIntegrityViolationException ex) {
+            throw duplicateUser(input, ex);
+        } catch (TooManyRequestsException ex) {
+            throw ex;
         } catch (Exception ex) {
             log.error("Error registering user: {}", input.getUsername(), ex);
             throw new UserException("Error registering user: " + input.getUsername());
         }
     }
 
+    /**
+     * Maps a unique-constraint violation on signup to the matching exception. Only when the
+     * constraint name is unknown (e.g. one generated by an older schema) does it look the email up.
+     */
+    private UserException duplicateUser(RegisterUserDTO input, DataIntegrityViolationException ex) {
+        String constraint = ex.getCause() instanceof ConstraintViolationException violation
+                ? violation.getConstraintName() : null;
+        boolean emailTaken;
+        if (constraint != null && constraint.toLowerCase().contains(User.EMAIL_CONSTRAINT)) {
+            emailTaken = true;
+        } else if (constraint != null && constraint.toLowerCase().contains(User.USERNAME_CONSTRAINT)) {
+            emailTaken = false;
+        } else {
+            emailTaken = userRepository.findByEmailNormalized(Identifiers.normalize(input.getEmail())).isPresent();
+        }
+
+        if (emailTaken) {
+            log.warn("Email alredy exists: {}", input.getEmail());
+            return new EmailAlreadyExistException("Email is alredy in use: " + input.getEmail());
+        }
+        log.warn("Username already exists: {}", input.getUsername());
+        return new UserAlreadyExistException("Username is already in use: " + input.getUsername());
+    }
+
     public User authenticate(LoginUserDTO input) {
-        log.info("Login with user: {}", input.getUsername());
+        log.debug("Login with user: {}", input.getUsername());
 
         if (input.getUsername() == null || input.getUsername().isEmpty()) {
             log.error("Username is empty");
@@ -96,24 +130,30 @@ public class AuthenticationService {
         }
 
         try {
-            boolean isEmail = input.getUsername().contains("@");
-
-            User user = (isEmail
-                    ? userRepository.findByEmail(input.getUsername())
-                    : userRepository.findByUsername(input.getUsername()))
+            User user = userRepository.findByIdentifier(input.getUsername())
                     .orElseThrow(() -> {
-                        log.warn("User not found for identifier: {}", input.getUsername());
+                        long suppressed = FAILED_LOGIN_LOG.tryAcquire();
+                        if (suppressed >= 0) {
+                            log.warn("User not found for identifier: {} (suppressed={})", input.getUsername(), suppressed);
+                        }
                         return new UserNotFoundException(null);
                     });
 
             if (!passwordEncoder.matches(input.getPassword(), user.getPassword())) {
-                log.warn("Invalid credentials for user: {}", input.getUsername());
-                throw new UserException("Invalid credentials");
+                long suppressed = FAILED_LOGIN_LOG.tryAcquire();
+                if (suppressed >= 0) {
+                    log.warn("Invalid credentials for user: {} (suppressed={})", input.getUsername(), suppressed);
+                }
+                throw new AuthenticationFailedException("Invalid credentials");
+            }
+
+            if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+                rehashPassword(user, input.getPassword());
             }
 
             log.info("Successfully authenticated: {}", input.getUsername());
             return user;
-        } catch (UserNotFoundException ex) {
+        } catch (UserNotFoundException | AuthenticationFailedException | TooManyRequestsException ex) {
             throw ex;
         } catch (Exception ex) {
             log.error("Authentication error: {}", input.getUsername(), ex);
@@ -121,23 +161,32 @@ public class AuthenticationService {
         }
     }
 
-    public User getUserByUsernameOrEmail(String usernameOrEmail) {
-        log.info("Searching user with username or email: {}", usernameOrEmail);
-
-        if (usernameOrEmail == null || usernameOrEmail.isEmpty()) {
-            log.error("UsernameOrEmail is empty");
-            throw new IllegalArgumentException("UsernameOrEmail is empty");
-        }
-
+    /**
+     * Re-encodes the password with the current BCrypt cost after a successful login.
+     * A failure here never fails the login; the hash is simply upgraded on a later attempt.
+     */
+    private void rehashPassword(User user, String rawPassword) {
         try {
-            return userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
-                    .orElseThrow(() -> {
-                        log.warn("Username or Email not found: {}", usernameOrEmail);
-                        return new UserNotFoundException(null);
-                    });
+            user.setPassword(passwordEncoder.encode(rawPassword));
+            userRepository.save(user);
+            log.info("Password hash re-encoded with current cost for user: {}", user.getUsername());
         } catch (Exception ex) {
-            log.error("Error with username or email: {}", usernameOrEmail, ex);
-            throw new UserException("Error please try again");
+            log.warn("Could not re-encode password hash for user {}: {}", user.getUsername(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the owner of a rotated refresh token, read through the near-cache: no password hashing
+     * is involved. A user that was disabled or locked since login can no longer refresh.
+     */
+    public AuthenticatedUser getRefreshableUser(String username) {
+        AuthenticatedUser user = userDetailsCache.find(username)
+                .filter(u -> u.isEnabled() && u.isAccountNonLocked() && u.isAccountNonExpired())
+                .orElse(null);
+        if (user == null) {
+            log.warn("Refresh rejected for unavailable user: {}", username);
+            throw new AuthenticationFailedException("Invalid refresh token");
         }
+        return user;
     }
 }
\ No newline at end of file
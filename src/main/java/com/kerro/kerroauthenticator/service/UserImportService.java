@@ -0,0 +1,289 @@
+package com.kerro.kerroauthenticator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.kerro.kerroauthenticator.dto.UserImportResultDTO;
+import com.kerro.kerroauthenticator.dto.UserImportResultDTO.RowError;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.security.BoundedPasswordEncoder;
+import com.kerro.kerroauthenticator.utils.Constantes;
+import com.kerro.kerroauthenticator.utils.Identifiers;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Streams users from a CSV or NDJSON body into the users table in JDBC batches.
+ * <p>
+ * CSV follows RFC 4180: fields may be quoted, and quoted fields may hold commas, doubled quotes and line
+ * breaks. Spaces around unquoted fields are trimmed. A malformed record stops the import; the rows
+ * read before it are kept and the error is reported with its line.
+ * <p>
+ * Plain passwords are hashed in parallel on a pool separate from the login pool; values given as
+ * {@code passwordHash} must already be BCrypt hashes. Rows that conflict with an existing username
+ * or email are skipped with {@code ON CONFLICT DO NOTHING} and reported without aborting the batch.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final String DEFAULT_ROLE = "user";
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.WRAP_AS_ARRAY, CsvParser.Feature.SKIP_EMPTY_LINES, CsvParser.Feature.TRIM_SPACES)
+            .build();
+    private static final String INSERT_SQL = """
+            INSERT INTO users (id, username, email, username_normalized, email_normalized, password, role,
+                               account_non_expired, account_non_locked, credentials_non_expired, enabled)
+            VALUES (?, ?, ?, ?, ?, ?, ?, true, true, true, true)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService hashingPool;
+    private final int batchSize;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             PasswordEncoder passwordEncoder,
+                             ObjectMapper objectMapper,
+                             @Value("${users.import.batch-size}") int batchSize,
+                             @Value("${users.import.hashing-threads}") int hashingThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder instanceof BoundedPasswordEncoder bounded
+                ? bounded.getDelegate() : passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.hashingPool = Executors.newFixedThreadPool(
+                hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors());
+    }
+
+    public UserImportResultDTO importUsers(InputStream body, boolean ndjson) throws IOException {
+        long start = System.nanoTime();
+        ImportStats stats = new ImportStats();
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        Consumer<ImportRow> rows = row -> {
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                insertBatch(batch, stats);
+                batch.clear();
+            }
+        };
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (ndjson) {
+                readNdjson(reader, stats, rows);
+            } else {
+                readCsv(reader, stats, rows);
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertBatch(batch, stats);
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        double usersPerSecond = stats.imported * 1000.0 / elapsedMillis;
+        log.info("User import finished: imported={} conflicts={} rejected={} in {} ms ({} users/s)",
+                stats.imported, stats.conflicts, stats.rejected, elapsedMillis, Math.round(usersPerSecond));
+        return new UserImportResultDTO(stats.imported, stats.conflicts, stats.rejected,
+                elapsedMillis, usersPerSecond, stats.errors);
+    }
+
+    private void insertBatch(List<ImportRow> rows, ImportStats stats) {
+        List<CompletableFuture<String>> hashes = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            hashes.add(row.passwordHash() != null
+                    ? CompletableFuture.completedFuture(row.passwordHash())
+                    : CompletableFuture.supplyAsync(() -> passwordEncoder.encode(row.password()), hashingPool));
+        }
+
+        long[] ids = allocateIds(rows.size());
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRow row = rows.get(i);
+            args.add(new Object[]{ids[i], row.username(), row.email(), Identifiers.normalize(row.username()),
+                    Identifiers.normalize(row.email()), hashes.get(i).join(), row.role()});
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                stats.conflict(rows.get(i));
+            } else {
+                stats.imported++;
+            }
+        }
+    }
+
+    /**
+     * Reserves ids the same way Hibernate's pooled optimizer does: every nextval of user_seq
+     * is the upper bound of a block of {@link User#ID_ALLOCATION_SIZE} ids.
+     */
+    private long[] allocateIds(int count) {
+        long[] ids = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            Long hi = jdbcTemplate.queryForObject("SELECT nextval('user_seq')", Long.class);
+            long lo = Math.max(1, hi - User.ID_ALLOCATION_SIZE + 1);
+            for (long id = lo; id <= hi && filled < count; id++) {
+                ids[filled++] = id;
+            }
+        }
+        return ids;
+    }
+
+    private void readNdjson(BufferedReader reader, ImportStats stats, Consumer<ImportRow> rows) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            ImportRow row = parseJson(lineNumber, line, stats);
+            if (row != null) {
+                rows.accept(row);
+            }
+        }
+    }
+
+    private void readCsv(Reader reader, ImportStats stats, Consumer<ImportRow> rows) throws IOException {
+        long line = 1;
+        try (MappingIterator<String[]> records = CSV_MAPPER.readerFor(String[].class).readValues(reader)) {
+            if (!records.hasNextValue()) {
+                throw new IllegalArgumentException("CSV body is empty");
+            }
+            String[] header = records.nextValue();
+            while (records.hasNextValue()) {
+                // línea donde empieza el registro: un campo entre comillas puede ocupar varias
+                line = records.getParser().currentLocation().getLineNr();
+                ImportRow row = parseCsv(line, records.nextValue(), header, stats);
+                if (row != null) {
+                    rows.accept(row);
+                }
+            }
+        } catch (RuntimeJsonMappingException | JsonProcessingException ex) {
+            // tras un registro mal formado no hay forma fiable de saber dónde empieza el siguiente
+            stats.reject(line, null, "Malformed CSV, import stopped: " + malformedReason(ex));
+        }
+    }
+
+    private static String malformedReason(Exception ex) {
+        Throwable cause = ex instanceof RuntimeJsonMappingException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof JsonProcessingException processing ? processing.getOriginalMessage() : cause.getMessage();
+    }
+
+    private ImportRow parseCsv(long line, String[] values, String[] header, ImportStats stats) {
+        if (values.length != header.length) {
+            stats.reject(line, null, "Expected " + header.length + " columns");
+            return null;
+        }
+        String username = null, email = null, role = null, password = null, passwordHash = null;
+        for (int i = 0; i < header.length; i++) {
+            String value = values[i];
+            switch (header[i]) {
+                case "username" -> username = value;
+                case "email" -> email = value;
+                case "role" -> role = value;
+                case "password" -> password = value;
+                case "passwordHash" -> passwordHash = value;
+                default -> { }
+            }
+        }
+        return validate(line, username, email, role, password, passwordHash, stats);
+    }
+
+    private ImportRow parseJson(long line, String text, ImportStats stats) {
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            return validate(line, node.path("username").asText(null), node.path("email").asText(null),
+                    node.path("role").asText(null), node.path("password").asText(null),
+                    node.path("passwordHash").asText(null), stats);
+        } catch (IOException ex) {
+            stats.reject(line, null, "Invalid JSON");
+            return null;
+        }
+    }
+
+    private ImportRow validate(long line, String username, String email, String role,
+                               String password, String passwordHash, ImportStats stats) {
+        if (username == null || username.isBlank()) {
+            stats.reject(line, null, "Username is empty");
+            return null;
+        }
+        if (Identifiers.isEmail(username)) {
+            stats.reject(line, username, "Username cannot contain @");
+            return null;
+        }
+        if (email == null || !email.contains("@")) {
+            stats.reject(line, username, "Email is invalid");
+            return null;
+        }
+        boolean hasHash = passwordHash != null && !passwordHash.isEmpty();
+        if (hasHash && !BCRYPT_HASH.matcher(passwordHash).matches()) {
+            stats.reject(line, username, "passwordHash is not a BCrypt hash");
+            return null;
+        }
+        if (!hasHash && (password == null || password.isEmpty())) {
+            stats.reject(line, username, Constantes.PASSWORDNULO);
+            return null;
+        }
+        return new ImportRow(line, username, email, role == null || role.isBlank() ? DEFAULT_ROLE : role,
+                hasHash ? null : password, hasHash ? passwordHash : null);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingPool.shutdown();
+    }
+
+    private record ImportRow(long line, String username, String email, String role,
+                             String password, String passwordHash) {
+    }
+
+    private static final class ImportStats {
+        private long imported;
+        private long conflicts;
+        private long rejected;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void conflict(ImportRow row) {
+            conflicts++;
+            addError(new RowError(row.line(), row.username(), "Username or email already exists"));
+        }
+
+        void reject(long line, String username, String reason) {
+            rejected++;
+            addError(new RowError(line, username, reason));
+        }
+
+        private void addError(RowError error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.kerro.kerroauthenticator.service;
+
+import com.kerro.kerroauthenticator.dto.UserDTO;
+import com.kerro.kerroauthenticator.repository.UserRepository;
+import com.kerro.kerroauthenticator.utils.Identifiers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Substring search over usernames, or over emails when the term contains '@', for the admin console.
+ * <p>
+ * Results come in id order, one page at a time: the next page starts after the last id returned
+ * ({@link Page#nextCursor()}), so deep pages cost the same as the first and no count is ever run.
+ * Page size is capped by {@code users.search.max-limit}. Terms shorter than a trigram are rejected
+ * because the trigram index cannot serve them and they would scan the whole table.
+ */
+@Service
+public class UserSearchService {
+
+    private static final int MIN_TERM_LENGTH = 3;
+
+    private final UserRepository userRepository;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public UserSearchService(UserRepository userRepository,
+                             @Value("${users.search.default-limit}") int defaultLimit,
+                             @Value("${users.search.max-limit}") int maxLimit) {
+        this.userRepository = userRepository;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public record Page(List<UserDTO> users, Long nextCursor) {
+    }
+
+    /**
+     * @param after last id of the previous page, null for the first one
+     * @param limit page size, null for the default; values above the cap are lowered to it
+     * @throws IllegalArgumentException if the term is shorter than three characters
+     */
+    public Page search(String term, Long after, Integer limit) {
+        String normalized = Identifiers.normalize(term);
+        if (normalized == null || normalized.length() < MIN_TERM_LENGTH) {
+            throw new IllegalArgumentException("Search term must have at least " + MIN_TERM_LENGTH + " characters");
+        }
+        int pageSize = Math.clamp(limit == null ? defaultLimit : limit, 1, maxLimit);
+        String pattern = '%' + escapeLike(normalized) + '%';
+        long afterId = after == null ? 0 : after;
+
+        // una fila de más indica si hay otra página sin necesidad de contar
+        Limit fetch = Limit.of(pageSize + 1);
+        List<UserDTO> users = Identifiers.isEmail(normalized)
+                ? userRepository.searchByEmail(pattern, afterId, fetch)
+                : userRepository.searchByUsername(pattern, afterId, fetch);
+        if (users.size() <= pageSize) {
+            return new Page(users, null);
+        }
+        List<UserDTO> page = users.subList(0, pageSize);
+        return new Page(page, page.get(pageSize - 1).getId());
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,94 @@
+package com.kerro.kerroauthenticator.utils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Consecutive-failure circuit breaker.
+ * <p>
+ * After {@code failureThreshold} failures in a row the circuit opens and callers go straight to their
+ * fallback for {@code openDuration}. The first call after that is let through as a probe (half-open):
+ * success closes the circuit, failure opens it for another period.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Consumer<State> onTransition;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, Consumer<State> onTransition) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.onTransition = onTransition;
+    }
+
+    /**
+     * Runs {@code call} through the circuit. When the circuit refuses it the fallback is applied to
+     * {@code null}; when it throws {@code failureType} the failure is recorded and the fallback is applied
+     * to the exception. Any other exception propagates, but is still recorded as a failure: a probe has to
+     * settle the half-open state whatever happens, or the circuit would never let another call through.
+     */
+    public <T> T call(Supplier<T> call, Class<? extends RuntimeException> failureType,
+                      Function<RuntimeException, T> fallback) {
+        if (!tryAcquire()) {
+            return fallback.apply(null);
+        }
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException ex) {
+            onFailure();
+            if (failureType.isInstance(ex)) {
+                return fallback.apply(ex);
+            }
+            throw ex;
+        }
+        onSuccess();
+        return result;
+    }
+
+    /**
+     * @return whether the protected call may be attempted now
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAt >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            onTransition.accept(State.HALF_OPEN);
+            return true;
+        }
+        return false;
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            onTransition.accept(State.CLOSED);
+        }
+    }
+
+    public void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold || state.get() == State.HALF_OPEN) {
+            openedAt = System.nanoTime();
+            if (state.getAndSet(State.OPEN) != State.OPEN) {
+                onTransition.accept(State.OPEN);
+            }
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+}
@@ -0,0 +1,19 @@
+package com.kerro.kerroauthenticator.utils;
+
+import java.util.Locale;
+
+public class Identifiers {
+
+    private Identifiers(){
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    // Forma canónica de un username o email: sin espacios alrededor y en minúsculas
+    public static String normalize(String identifier) {
+        return identifier == null ? null : identifier.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static boolean isEmail(String identifier) {
+        return identifier != null && identifier.contains("@");
+    }
+}
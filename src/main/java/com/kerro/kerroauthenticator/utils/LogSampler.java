@@ -0,0 +1,41 @@
+package com.kerro.kerroauthenticator.utils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets through at most {@code permits} occurrences of a repeated log event per interval and counts
+ * the rest, so a flood of unauthorized requests or bad passwords costs a few lines per interval
+ * instead of one per request. The next line written reports how many were skipped.
+ */
+public final class LogSampler {
+
+    private final int permits;
+    private final long intervalNanos;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogSampler(int permits, Duration interval) {
+        this.permits = permits;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * @return {@code -1} if the event must not be logged, otherwise the number of events suppressed
+     * since the last one that was logged
+     */
+    public long tryAcquire() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+            used.set(0);
+        }
+        if (used.incrementAndGet() > permits) {
+            suppressed.incrementAndGet();
+            return -1;
+        }
+        return suppressed.getAndSet(0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.kerro.kerroauthenticator.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+public class TokenDigest {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private TokenDigest(){
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    // SHA-256 en base64url (43 caracteres): clave de ancho fijo para no guardar el token completo
+    public static String sha256(String token) {
+        return ENCODER.encodeToString(digest(token));
+    }
+
+    // Primeros 128 bits del SHA-256 (22 caracteres), suficiente para claves de Redis
+    public static String shortSha256(String value) {
+        return ENCODER.encodeToString(Arrays.copyOf(digest(value), 16));
+    }
+
+    // Siempre UTF-8: los tokens son ASCII y dan los mismos bytes que con US_ASCII, así que las claves ya
+    // guardadas siguen valiendo; jti, sid o cuerpos con ETag pueden no serlo, y US_ASCII los cambiaría por '?'
+    private static byte[] digest(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return md.digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
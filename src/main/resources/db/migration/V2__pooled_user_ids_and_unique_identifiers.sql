@@ -0,0 +1,16 @@
+-- Hibernate reserva los ids de users en bloques de User.ID_ALLOCATION_SIZE (optimizador pooled)
+ALTER SEQUENCE IF EXISTS user_seq INCREMENT BY 50;
+
+-- El alta depende de estas restricciones en lugar de consultar antes de insertar.
+-- En una base nueva la tabla aún no existe: la crea Hibernate con las mismas restricciones.
+DO $$
+BEGIN
+    IF to_regclass('users') IS NOT NULL THEN
+        IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_users_username') THEN
+            ALTER TABLE users ADD CONSTRAINT uk_users_username UNIQUE (username);
+        END IF;
+        IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_users_email') THEN
+            ALTER TABLE users ADD CONSTRAINT uk_users_email UNIQUE (email);
+        END IF;
+    END IF;
+END $$;
@@ -0,0 +1,38 @@
+-- Formas canónicas de username y email (sin espacios alrededor y en minúsculas, ver Identifiers.normalize).
+-- El login elige la columna por la forma del identificador y la busca por igualdad sobre su índice único,
+-- en lugar de un OR entre username y email. Las restricciones sobre las columnas originales quedan cubiertas
+-- por las nuevas y se eliminan.
+-- En una base nueva la tabla aún no existe: la crea Hibernate con las mismas columnas y restricciones.
+DO $$
+BEGIN
+    IF to_regclass('users') IS NOT NULL THEN
+        ALTER TABLE users ADD COLUMN IF NOT EXISTS username_normalized varchar(255);
+        ALTER TABLE users ADD COLUMN IF NOT EXISTS email_normalized varchar(255);
+
+        -- lower() coincide con toLowerCase(Locale.ROOT) para identificadores ASCII
+        UPDATE users
+           SET username_normalized = lower(btrim(username)),
+               email_normalized = lower(btrim(email))
+         WHERE username_normalized IS NULL OR email_normalized IS NULL;
+
+        IF EXISTS (SELECT 1 FROM users GROUP BY username_normalized HAVING count(*) > 1) THEN
+            RAISE EXCEPTION 'users has usernames that differ only in case or surrounding spaces; resolve them before migrating';
+        END IF;
+        IF EXISTS (SELECT 1 FROM users GROUP BY email_normalized HAVING count(*) > 1) THEN
+            RAISE EXCEPTION 'users has emails that differ only in case or surrounding spaces; resolve them before migrating';
+        END IF;
+
+        ALTER TABLE users ALTER COLUMN username_normalized SET NOT NULL;
+        ALTER TABLE users ALTER COLUMN email_normalized SET NOT NULL;
+
+        IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_users_username_normalized') THEN
+            ALTER TABLE users ADD CONSTRAINT uk_users_username_normalized UNIQUE (username_normalized);
+        END IF;
+        IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_users_email_normalized') THEN
+            ALTER TABLE users ADD CONSTRAINT uk_users_email_normalized UNIQUE (email_normalized);
+        END IF;
+
+        ALTER TABLE users DROP CONSTRAINT IF EXISTS uk_users_username;
+        ALTER TABLE users DROP CONSTRAINT IF EXISTS uk_users_email;
+    END IF;
+END $$;
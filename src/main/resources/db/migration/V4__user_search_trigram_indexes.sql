@@ -0,0 +1,25 @@
+-- Índices de trigramas para la búsqueda de usuarios (LIKE '%term%' sobre los identificadores normalizados).
+-- Hibernate no sabe crear índices GIN, así que a partir de aquí la tabla la crea esta migración si aún no
+-- existe, con el mismo esquema que genera para User; ddl-auto=update la encuentra completa.
+-- En tablas grandes CREATE INDEX bloquea las escrituras mientras se construye: se pueden crear antes con
+-- CREATE INDEX CONCURRENTLY y los mismos nombres, y IF NOT EXISTS los respeta.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE TABLE IF NOT EXISTS users (
+    id                      bigint       NOT NULL PRIMARY KEY,
+    username                varchar(255) NOT NULL,
+    password                varchar(255) NOT NULL,
+    email                   varchar(255) NOT NULL,
+    username_normalized     varchar(255) NOT NULL,
+    email_normalized        varchar(255) NOT NULL,
+    role                    varchar(255),
+    account_non_expired     boolean      NOT NULL,
+    account_non_locked      boolean      NOT NULL,
+    credentials_non_expired boolean      NOT NULL,
+    enabled                 boolean      NOT NULL,
+    CONSTRAINT uk_users_username_normalized UNIQUE (username_normalized),
+    CONSTRAINT uk_users_email_normalized UNIQUE (email_normalized)
+);
+
+CREATE INDEX IF NOT EXISTS ix_users_username_normalized_trgm ON users USING gin (username_normalized gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS ix_users_email_normalized_trgm ON users USING gin (email_normalized gin_trgm_ops);
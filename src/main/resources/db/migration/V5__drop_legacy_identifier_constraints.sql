@@ -0,0 +1,25 @@
+-- Antes de V2 Hibernate generaba la tabla a partir de @Column(unique = true) en username, con una restricción
+-- de nombre autogenerado (uk_<hash> o UK<hash> según la versión) que V2 no reconocía y V3 no eliminó. Seguía
+-- exigiendo unicidad sobre el valor sin normalizar: un índice más que mantener en cada alta y violaciones cuyo
+-- nombre el alta no conoce. Se eliminan todas las restricciones únicas de una sola columna sobre username o
+-- email, se llamen como se llamen; la unicidad la garantizan uk_users_username_normalized y
+-- uk_users_email_normalized.
+DO $$
+DECLARE
+    legacy record;
+BEGIN
+    IF to_regclass('users') IS NOT NULL THEN
+        FOR legacy IN
+            SELECT c.conname
+              FROM pg_constraint c
+              JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1]
+             WHERE c.conrelid = 'users'::regclass
+               AND c.contype = 'u'
+               AND cardinality(c.conkey) = 1
+               AND a.attname IN ('username', 'email')
+        LOOP
+            EXECUTE format('ALTER TABLE users DROP CONSTRAINT %I', legacy.conname);
+            RAISE NOTICE 'Dropped legacy unique constraint % on users', legacy.conname;
+        END LOOP;
+    END IF;
+END $$;
@@ -0,0 +1,120 @@
+package com.kerro.kerroauthenticator;
+
+import com.kerro.kerroauthenticator.jwt.TokenBlacklistService;
+import com.kerro.kerroauthenticator.jwt.VerifiedToken;
+import com.kerro.kerroauthenticator.jwt.VerifiedTokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Objects shared by the unit tests, built the same way Spring wires them. Redis is a real server started
+ * once per test run, so the Lua scripts run as they do in production; every {@link #redis()} starts from
+ * an empty database.
+ */
+public final class TestFixtures {
+
+    public static final long TOKEN_TTL_MILLIS = 15 * 60 * 1000L;
+    public static final Duration REFRESH_TTL = Duration.ofDays(14);
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private TestFixtures() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public static StringRedisTemplate redis() {
+        StringRedisTemplate redis = new StringRedisTemplate(connectionFactory());
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+        return redis;
+    }
+
+    /**
+     * A started container of its own; stop it after the test so its listeners stop receiving messages.
+     */
+    public static RedisMessageListenerContainer listenerContainer() {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory());
+        container.afterPropertiesSet();
+        container.start();
+        return container;
+    }
+
+    /**
+     * Waits for something delivered through a channel, which a real server does asynchronously.
+     */
+    public static void await(BooleanSupplier condition, String message) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail(message);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                fail(message);
+            }
+        }
+    }
+
+    private static synchronized LettuceConnectionFactory connectionFactory() {
+        if (connectionFactory == null) {
+            try {
+                int port;
+                try (ServerSocket socket = new ServerSocket(0)) {
+                    port = socket.getLocalPort();
+                }
+                RedisServer server = RedisServer.newRedisServer()
+                        .bind("127.0.0.1")
+                        .port(port)
+                        .setting("save \"\"")
+                        .setting("appendonly no")
+                        .onShutdownForceStop(true)
+                        .build();
+                server.start();
+                LettuceConnectionFactory factory =
+                        new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+                factory.afterPropertiesSet();
+                factory.start();
+                connectionFactory = factory;
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Unable to start the embedded Redis server", ex);
+            }
+        }
+        return connectionFactory;
+    }
+
+    public static TokenBlacklistService blacklist(StringRedisTemplate redis,
+                                                  RedisMessageListenerContainer listenerContainer,
+                                                  boolean bloomFilter) {
+        return blacklist(redis, listenerContainer, bloomFilter, new SimpleMeterRegistry());
+    }
+
+    public static TokenBlacklistService blacklist(StringRedisTemplate redis,
+                                                  RedisMessageListenerContainer listenerContainer,
+                                                  boolean bloomFilter, MeterRegistry meterRegistry) {
+        return new TokenBlacklistService(redis, new VerifiedTokenCache(1000, meterRegistry), listenerContainer,
+                TOKEN_TTL_MILLIS, REFRESH_TTL, bloomFilter, Duration.ofHours(1), 10_000, 0.001,
+                3, Duration.ofSeconds(10), false, meterRegistry);
+    }
+
+    public static VerifiedToken token(String subject, String tokenId, String sessionId) {
+        long now = System.currentTimeMillis();
+        return new VerifiedToken(subject, tokenId, sessionId, 1L, "user", 15, now, now + TOKEN_TTL_MILLIS);
+    }
+}
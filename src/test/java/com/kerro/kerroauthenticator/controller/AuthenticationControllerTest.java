@@ -0,0 +1,176 @@
+package com.kerro.kerroauthenticator.controller;
+
+import com.kerro.kerroauthenticator.TestFixtures;
+import com.kerro.kerroauthenticator.dto.LoginUserDTO;
+import com.kerro.kerroauthenticator.exception.TooManyRequestsException;
+import com.kerro.kerroauthenticator.jwt.JwtService;
+import com.kerro.kerroauthenticator.jwt.RefreshTokenService;
+import com.kerro.kerroauthenticator.jwt.SessionRegistry;
+import com.kerro.kerroauthenticator.jwt.TokenBlacklistService;
+import com.kerro.kerroauthenticator.jwt.TokenIntrospectionService;
+import com.kerro.kerroauthenticator.jwt.VerifiedToken;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.security.LoginThrottle;
+import com.kerro.kerroauthenticator.service.AuthenticationService;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AuthenticationControllerTest {
+
+    private final RedisMessageListenerContainer listenerContainer = TestFixtures.listenerContainer();
+    private final StringRedisTemplate redis = TestFixtures.redis();
+    private final TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+    private final RefreshTokenService refreshTokens = new RefreshTokenService(redis, blacklist, TestFixtures.REFRESH_TTL);
+    private final SessionRegistry sessions = new SessionRegistry(redis, blacklist);
+    private final JwtService jwtService = Mockito.mock(JwtService.class);
+    private final AuthenticationService authenticationService = Mockito.mock(AuthenticationService.class);
+    private final AuthenticationController controller = controller(sessions);
+
+    @AfterEach
+    void stopListenerContainer() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void logoutWithSessionEndsTheSessionAndSucceeds() {
+        String sessionId = refreshTokens.issue("alice", "phone", "10.0.0.1").sessionId();
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", sessionId);
+
+        ResponseEntity<Map<String, String>> response = controller.logout("Bearer access-token", verified, null);
+
+        assertEquals("Logout successful", response.getBody().get("message"));
+        assertTrue(blacklist.isBlacklisted(verified));
+        assertTrue(sessions.list("alice", null).isEmpty());
+    }
+
+    @Test
+    void secondLogoutReportsTokenAlreadyInvalidated() {
+        String sessionId = refreshTokens.issue("alice", "phone", "10.0.0.1").sessionId();
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", sessionId);
+
+        controller.logout("Bearer access-token", verified, null);
+        ResponseEntity<Map<String, String>> response = controller.logout("Bearer access-token", verified, null);
+
+        assertEquals("Token already invalidated", response.getBody().get("message"));
+    }
+
+    @Test
+    void failingSessionRevokeStillRevokesTheAccessToken() {
+        SessionRegistry failingSessions = Mockito.mock(SessionRegistry.class);
+        when(failingSessions.revoke(anyString(), anyString()))
+                .thenThrow(new RedisConnectionFailureException("Redis unavailable"));
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", "session-1");
+
+        ResponseEntity<Map<String, String>> response = controller(failingSessions)
+                .logout("Bearer access-token", verified, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Logout processed (access token revoked, session still active)", response.getBody().get("message"));
+        assertTrue(blacklist.isBlacklisted(verified));
+        assertFalse(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-2", null)));
+    }
+
+    @Test
+    void unverifiableTokenIsRejectedWithoutRecordingAnything() {
+        when(jwtService.verify("expired-token")).thenThrow(new ExpiredJwtException(null, null, "JWT expired"));
+
+        ResponseEntity<Map<String, String>> response = controller.logout("Bearer expired-token", null, null);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        assertEquals(0, blacklist.pendingRevocations());
+        assertTrue(redis.keys("*").isEmpty());
+    }
+
+    @Test
+    void saturatedPasswordPoolAnswers429WithRetryAfter() {
+        LoginUserDTO login = new LoginUserDTO("alice", null, "secret");
+        when(authenticationService.authenticate(login))
+                .thenThrow(new TooManyRequestsException("Too many authentication requests, please retry later", 3));
+
+        ResponseEntity<Map<String, Object>> response = controller.authenticate(login, new MockHttpServletRequest());
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertTrue(sessions.list("alice", null).isEmpty());
+    }
+
+    @Test
+    void profileIsRevalidatedWithItsETag() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver()).build();
+        authenticateAs("user");
+
+        MvcResult first = mvc.perform(get("/api/v1/auth/me"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/api/v1/auth/me").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        authenticateAs("admin");
+        mvc.perform(get("/api/v1/auth/me").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.role").value("admin"));
+    }
+
+    @Test
+    void infoETagDependsOnTheUser() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver()).build();
+        authenticateAs("user");
+        String etag = mvc.perform(get("/api/v1/auth/info")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get("/api/v1/auth/info").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/api/v1/auth/me").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    private AuthenticationController controller(SessionRegistry sessionRegistry) {
+        return new AuthenticationController(jwtService, authenticationService, blacklist,
+                Mockito.mock(LoginThrottle.class), refreshTokens, Mockito.mock(TokenIntrospectionService.class),
+                sessionRegistry);
+    }
+
+    private static void authenticateAs(String role) {
+        User user = User.builder().id(7L).username("alice").email("alice@example.com").password("hash").role(role).build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
@@ -0,0 +1,190 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.TestFixtures;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.security.CustomUserDetailsService;
+import com.kerro.kerroauthenticator.security.TokenPrincipal;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationFilterTest {
+
+    private static final Duration MAX_AGE = Duration.ofMinutes(15);
+
+    private final SecretKey key = Keys.hmacShaKeyFor(
+            "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+    private final JwtCodec codec = new JwtCodec(key);
+    private final RedisMessageListenerContainer listenerContainer = TestFixtures.listenerContainer();
+    private final StringRedisTemplate redis = TestFixtures.redis();
+    private final TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+    private final CustomUserDetailsService userDetailsService = Mockito.mock(CustomUserDetailsService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final User alice = User.builder().id(7L).username("alice").email("alice@example.com")
+            .password("hash").role("admin").build();
+
+    @AfterEach
+    void stopListenerContainer() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void claimsOnlyTrustsAFreshTokenWithoutLoadingTheUser() throws Exception {
+        long now = System.currentTimeMillis();
+
+        Authentication authentication = authenticate(filter(true), token(7L, "admin", now));
+
+        TokenPrincipal principal = assertInstanceOf(TokenPrincipal.class, authentication.getPrincipal());
+        assertEquals("alice", principal.getUsername());
+        assertEquals(7L, principal.getId());
+        assertEquals("ROLE_admin", authentication.getAuthorities().iterator().next().getAuthority());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void claimsOnlyLoadsTheUserOnceTheTokenIsOlderThanTheMaxAge() throws Exception {
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(alice);
+        long issuedAt = System.currentTimeMillis() - MAX_AGE.toMillis() - 60_000;
+
+        Authentication authentication = authenticate(filter(true), token(7L, "admin", issuedAt));
+
+        assertSame(alice, authentication.getPrincipal());
+    }
+
+    @Test
+    void claimsOnlyLoadsTheUserForTokensWithoutPrincipalClaims() throws Exception {
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(alice);
+
+        Authentication authentication = authenticate(filter(true), token(null, null, System.currentTimeMillis()));
+
+        assertSame(alice, authentication.getPrincipal());
+    }
+
+    @Test
+    void withoutClaimsOnlyTheUserIsAlwaysLoaded() throws Exception {
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(alice);
+
+        Authentication authentication = authenticate(filter(false), token(7L, "admin", System.currentTimeMillis()));
+
+        assertSame(alice, authentication.getPrincipal());
+    }
+
+    @Test
+    void malformedTokensAreDroppedBeforeAnyStage() throws Exception {
+        JwtAuthenticationFilter filter = filter(false);
+
+        send(filter, "not-a-jwt");
+
+        assertEquals(0, stageCount("rejected-cache"));
+        assertEquals(0, stageCount("verify"));
+        assertEquals(1, outcomeCount("malformed"));
+    }
+
+    @Test
+    void repeatedBadSignatureIsRefusedFromTheRejectedCache() throws Exception {
+        JwtAuthenticationFilter filter = filter(false);
+        JwtCodec otherKey = new JwtCodec(Keys.hmacShaKeyFor(
+                "fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.UTF_8)));
+        long now = System.currentTimeMillis();
+        String forged = otherKey.encode(new VerifiedToken("alice", "jti-1", null, 7L, "admin", 15, now,
+                now + TestFixtures.TOKEN_TTL_MILLIS));
+
+        send(filter, forged);
+        send(filter, forged);
+
+        assertEquals(2, stageCount("rejected-cache"));
+        assertEquals(1, stageCount("verify"));
+        assertEquals(2, outcomeCount("invalid_signature"));
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void revocationIsOnlyCheckedForVerifiedTokens() throws Exception {
+        JwtAuthenticationFilter filter = filter(false);
+        long past = System.currentTimeMillis() - 2 * TestFixtures.TOKEN_TTL_MILLIS;
+        String expired = codec.encode(new VerifiedToken("alice", "jti-1", null, 7L, "admin", 15, past,
+                past + TestFixtures.TOKEN_TTL_MILLIS));
+
+        send(filter, expired);
+
+        assertEquals(1, stageCount("verify"));
+        assertEquals(0, stageCount("revocation"));
+        assertEquals(1, outcomeCount("expired"));
+    }
+
+    @Test
+    void revokedTokenIsRejectedAndRetriesSkipRedis() throws Exception {
+        JwtAuthenticationFilter filter = filter(true);
+        String token = token(7L, "admin", System.currentTimeMillis());
+        blacklist.blacklistToken(token, codec.decode(token));
+
+        assertEquals(401, send(filter, token).getStatus());
+        assertEquals(401, send(filter, token).getStatus());
+
+        assertEquals(1, stageCount("verify"));
+        assertEquals(1, stageCount("revocation"));
+        assertEquals(2, outcomeCount("blacklisted"));
+    }
+
+    private JwtAuthenticationFilter filter(boolean claimsOnly) {
+        JwtService jwtService = new JwtService(JwtKeyRing.hmac(key), TestFixtures.TOKEN_TTL_MILLIS,
+                new VerifiedTokenCache(1000, meterRegistry), meterRegistry);
+        return new JwtAuthenticationFilter(jwtService, userDetailsService, blacklist,
+                new RejectedTokenCache(1000, Duration.ofMinutes(5), meterRegistry), claimsOnly, MAX_AGE,
+                meterRegistry);
+    }
+
+    private String token(Long userId, String role, long issuedAtMillis) {
+        Integer flags = role == null ? null : TokenPrincipal.flagsOf(alice);
+        return codec.encode(new VerifiedToken("alice", "jti-" + issuedAtMillis, null, userId, role, flags,
+                issuedAtMillis / 1000 * 1000, System.currentTimeMillis() + TestFixtures.TOKEN_TTL_MILLIS));
+    }
+
+    private static Authentication authenticate(JwtAuthenticationFilter filter, String token) throws Exception {
+        send(filter, token);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static MockHttpServletResponse send(JwtAuthenticationFilter filter, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/auth/me");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private long stageCount(String stage) {
+        return meterRegistry.get("kerro.jwt.filter.stage").tag("stage", stage).timer().count();
+    }
+
+    private long outcomeCount(String outcome) {
+        return meterRegistry.get("kerro.jwt.filter").tag("outcome", outcome).timer().count();
+    }
+}
@@ -0,0 +1,106 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtCodecTest {
+
+    private final SecretKey key = Keys.hmacShaKeyFor(
+            "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+    private final JwtCodec codec = new JwtCodec(key);
+
+    @Test
+    void roundTripKeepsClaims() {
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        VerifiedToken claims = new VerifiedToken("alice", "jti-1", "sid-1", 7L, "user", 15, now, now + 60_000);
+
+        assertEquals(claims, codec.decode(codec.encode(claims)));
+    }
+
+    @Test
+    void acceptsTokensIssuedByJjwt() {
+        String token = Jwts.builder()
+                .setSubject("bob")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(key)
+                .compact();
+
+        assertEquals("bob", codec.decode(token).subject());
+    }
+
+    @Test
+    void rejectsTamperedSignature() {
+        long now = System.currentTimeMillis();
+        String token = codec.encode(new VerifiedToken("alice", null, null, null, null, now, now + 60_000));
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(SignatureException.class, () -> codec.decode(tampered));
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        long now = System.currentTimeMillis();
+        String token = codec.encode(new VerifiedToken("alice", null, null, null, null, now - 120_000, now - 60_000));
+
+        assertThrows(ExpiredJwtException.class, () -> codec.decode(token));
+    }
+
+    @Test
+    void rejectsOtherAlgorithms() {
+        String header = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+        String token = codec.encode(new VerifiedToken("alice", null, null, null, null, 0, System.currentTimeMillis() + 60_000));
+        String forged = header + token.substring(token.indexOf('.'));
+
+        assertThrows(UnsupportedJwtException.class, () -> codec.decode(forged));
+        assertThrows(MalformedJwtException.class, () -> codec.decode("not-a-token"));
+    }
+
+    @Test
+    void signsWithAsymmetricKeysAndKeyId() throws Exception {
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair ed = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        VerifiedToken claims = new VerifiedToken("alice", "jti-1", 7L, "user", 15, now, now + 60_000);
+
+        for (KeyPair pair : new KeyPair[]{ec.generateKeyPair(), ed}) {
+            SigningKey signing = new AsymmetricSigningKey("k1", pair.getPrivate(), pair.getPublic());
+            JwtCodec asymmetric = new JwtCodec(new JwtKeyRing(signing, Map.of("k1", signing), null));
+            String token = asymmetric.encode(claims);
+
+            assertEquals(claims, asymmetric.decode(token));
+            // un token HMAC sin kid no se acepta si no hay clave heredada
+            assertThrows(UnsupportedJwtException.class, () -> asymmetric.decode(codec.encode(claims)));
+        }
+    }
+
+    @Test
+    void rejectsUnknownKeyId() throws Exception {
+        KeyPair pair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        SigningKey retired = new AsymmetricSigningKey("old", pair.getPrivate(), pair.getPublic());
+        String token = new JwtCodec(new JwtKeyRing(retired, Map.of("old", retired), null))
+                .encode(new VerifiedToken("alice", null, null, null, null, 0, System.currentTimeMillis() + 60_000));
+
+        JwtCodec rotated = new JwtCodec(JwtKeyRing.hmac(key));
+        assertThrows(UnsupportedJwtException.class, () -> rotated.decode(token));
+    }
+}
@@ -0,0 +1,142 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.TestFixtures;
+import com.kerro.kerroauthenticator.exception.AuthenticationFailedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefreshTokenServiceTest {
+
+    private final RedisMessageListenerContainer listenerContainer = TestFixtures.listenerContainer();
+    private final StringRedisTemplate redis = TestFixtures.redis();
+    private final TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+    private final RefreshTokenService refreshTokens = new RefreshTokenService(redis, blacklist, TestFixtures.REFRESH_TTL);
+    private final SessionRegistry sessions = new SessionRegistry(redis, blacklist);
+
+    @AfterEach
+    void stopListenerContainer() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Test
+    void rotationReplacesTheTokenWithinTheSameSession() {
+        RefreshTokenService.Issued issued = refreshTokens.issue("alice", "phone", "10.0.0.1");
+
+        RefreshTokenService.Rotation rotation = refreshTokens.rotate(issued.refreshToken());
+        RefreshTokenService.Rotation next = refreshTokens.rotate(rotation.refreshToken());
+
+        assertEquals("alice", rotation.subject());
+        assertEquals(issued.sessionId(), rotation.sessionId());
+        assertNotEquals(issued.refreshToken(), rotation.refreshToken());
+        assertEquals(issued.sessionId(), next.sessionId());
+        assertEquals(1, sessions.list("alice", null).size());
+    }
+
+    @Test
+    void reusedTokenRevokesTheWholeFamily() {
+        RefreshTokenService.Issued issued = refreshTokens.issue("alice", "phone", "10.0.0.1");
+        RefreshTokenService.Rotation rotation = refreshTokens.rotate(issued.refreshToken());
+        VerifiedToken accessToken = TestFixtures.token("alice", "jti-1", issued.sessionId());
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(issued.refreshToken()));
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(rotation.refreshToken()));
+        assertTrue(sessions.list("alice", null).isEmpty());
+        assertTrue(blacklist.isBlacklisted(accessToken));
+    }
+
+    @Test
+    void forgedSecretIsRejectedWithoutEndingTheSession() {
+        RefreshTokenService.Issued issued = refreshTokens.issue("alice", "phone", "10.0.0.1");
+        RefreshTokenService.Rotation rotation = refreshTokens.rotate(issued.refreshToken());
+        // sujeto y familia se leen en cualquier access token (sub y sid); solo el secreto es desconocido
+        String forged = issued.refreshToken().substring(0, issued.refreshToken().lastIndexOf('.') + 1) + "guessed";
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(forged));
+
+        assertFalse(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-1", issued.sessionId())));
+        assertEquals(issued.sessionId(), refreshTokens.rotate(rotation.refreshToken()).sessionId());
+    }
+
+    @Test
+    void tokenReplacedSeveralRotationsAgoStillCountsAsReuse() {
+        RefreshTokenService.Issued issued = refreshTokens.issue("alice", "phone", "10.0.0.1");
+        String current = issued.refreshToken();
+        for (int i = 0; i < 3; i++) {
+            current = refreshTokens.rotate(current).refreshToken();
+        }
+        String latest = current;
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(issued.refreshToken()));
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(latest));
+        assertTrue(sessions.list("alice", null).isEmpty());
+    }
+
+    @Test
+    void reuseLeavesTheUsersOtherSessionsAlone() {
+        RefreshTokenService.Issued stolen = refreshTokens.issue("alice", "phone", "10.0.0.1");
+        RefreshTokenService.Issued laptop = refreshTokens.issue("alice", "laptop", "10.0.0.2");
+        refreshTokens.rotate(stolen.refreshToken());
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(stolen.refreshToken()));
+
+        assertEquals(laptop.sessionId(), refreshTokens.rotate(laptop.refreshToken()).sessionId());
+    }
+
+    @Test
+    void familiesStartedBeforeTheWatermarkAreRejected() {
+        RefreshTokenService.Issued issued = refreshTokens.issue("alice", "phone", "10.0.0.1");
+
+        blacklist.revokeAllIssuedBefore("alice", System.currentTimeMillis() + 1000);
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(issued.refreshToken()));
+        assertTrue(sessions.list("alice", null).isEmpty());
+    }
+
+    @Test
+    void onlyTheOwnerCanRevokeAFamily() {
+        RefreshTokenService.Issued issued = refreshTokens.issue("alice", "phone", "10.0.0.1");
+
+        assertFalse(refreshTokens.revoke(issued.refreshToken(), "mallory"));
+        assertTrue(refreshTokens.revoke(issued.refreshToken(), "alice"));
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(issued.refreshToken()));
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate("family.secret"));
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate("!!.family.secret"));
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(".."));
+    }
+
+    @Test
+    void everyKeyOfTheUserSharesTheSubjectHashTag() {
+        refreshTokens.issue("alice", "phone", "10.0.0.1");
+        RefreshTokenService.Issued laptop = refreshTokens.issue("alice", "laptop", "10.0.0.2");
+        blacklist.revokeAllIssuedBefore("alice", System.currentTimeMillis());
+        blacklist.blacklistToken("access-token", TestFixtures.token("alice", "jti-1", laptop.sessionId()));
+        sessions.revoke("alice", laptop.sessionId());
+
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redis.scan(ScanOptions.scanOptions().match("*").build())) {
+            cursor.forEachRemaining(keys::add);
+        }
+
+        assertEquals(5, keys.size());
+        assertTrue(keys.stream().allMatch(key -> key.contains("{alice}")), keys::toString);
+    }
+}
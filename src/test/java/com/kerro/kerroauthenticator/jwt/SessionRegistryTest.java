@@ -0,0 +1,95 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.TestFixtures;
+import com.kerro.kerroauthenticator.dto.SessionDTO;
+import com.kerro.kerroauthenticator.exception.AuthenticationFailedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRegistryTest {
+
+    private final RedisMessageListenerContainer listenerContainer = TestFixtures.listenerContainer();
+    private final StringRedisTemplate redis = TestFixtures.redis();
+    private final TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+    private final RefreshTokenService refreshTokens = new RefreshTokenService(redis, blacklist, TestFixtures.REFRESH_TTL);
+    private final SessionRegistry sessions = new SessionRegistry(redis, blacklist);
+
+    @AfterEach
+    void stopListenerContainer() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Test
+    void listsTheUsersSessionsAndMarksTheCurrentOne() {
+        RefreshTokenService.Issued phone = refreshTokens.issue("alice", "phone", "10.0.0.1");
+        refreshTokens.issue("alice", "laptop", "10.0.0.2");
+        refreshTokens.issue("bob", "tablet", "10.0.0.3");
+
+        List<SessionDTO> listed = sessions.list("alice", phone.sessionId());
+
+        assertEquals(2, listed.size());
+        SessionDTO current = listed.stream().filter(SessionDTO::isCurrent).findFirst().orElseThrow();
+        assertEquals(phone.sessionId(), current.getId());
+        assertEquals("phone", current.getUserAgent());
+        assertEquals("10.0.0.1", current.getIpAddress());
+        assertNotNull(current.getCreatedAt());
+        assertTrue(current.getExpiresAt() > System.currentTimeMillis());
+    }
+
+    @Test
+    void revokingASessionEndsItsRefreshAndAccessTokens() {
+        RefreshTokenService.Issued phone = refreshTokens.issue("alice", "phone", "10.0.0.1");
+        RefreshTokenService.Issued laptop = refreshTokens.issue("alice", "laptop", "10.0.0.2");
+
+        assertTrue(sessions.revoke("alice", phone.sessionId()));
+
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(phone.refreshToken()));
+        assertTrue(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-1", phone.sessionId())));
+        assertFalse(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-2", laptop.sessionId())));
+        assertEquals(List.of(laptop.sessionId()), sessions.list("alice", null).stream().map(SessionDTO::getId).toList());
+    }
+
+    @Test
+    void aUserCannotRevokeAnotherUsersSession() {
+        RefreshTokenService.Issued bob = refreshTokens.issue("bob", "tablet", "10.0.0.3");
+
+        assertFalse(sessions.revoke("alice", bob.sessionId()));
+
+        assertEquals(1, sessions.list("bob", null).size());
+        assertEquals(bob.sessionId(), refreshTokens.rotate(bob.refreshToken()).sessionId());
+    }
+
+    @Test
+    void revokeOthersKeepsOnlyTheCurrentSession() {
+        RefreshTokenService.Issued phone = refreshTokens.issue("alice", "phone", "10.0.0.1");
+        RefreshTokenService.Issued laptop = refreshTokens.issue("alice", "laptop", "10.0.0.2");
+        RefreshTokenService.Issued tablet = refreshTokens.issue("alice", "tablet", "10.0.0.3");
+
+        assertEquals(2, sessions.revokeOthers("alice", phone.sessionId()));
+
+        assertEquals(List.of(phone.sessionId()), sessions.list("alice", null).stream().map(SessionDTO::getId).toList());
+        assertThrows(AuthenticationFailedException.class, () -> refreshTokens.rotate(laptop.refreshToken()));
+        assertTrue(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-1", tablet.sessionId())));
+        assertFalse(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-2", phone.sessionId())));
+    }
+
+    @Test
+    void revokeOthersWithoutCurrentSessionEndsThemAll() {
+        refreshTokens.issue("alice", "phone", "10.0.0.1");
+        refreshTokens.issue("alice", "laptop", "10.0.0.2");
+
+        assertEquals(2, sessions.revokeOthers("alice", null));
+        assertEquals(0, sessions.revokeOthers("alice", null));
+        assertTrue(sessions.list("alice", null).isEmpty());
+    }
+}
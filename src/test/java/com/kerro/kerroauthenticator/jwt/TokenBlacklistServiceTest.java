@@ -0,0 +1,206 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.TestFixtures;
+import com.kerro.kerroauthenticator.utils.TokenDigest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBlacklistServiceTest {
+
+    private final RedisMessageListenerContainer listenerContainer = TestFixtures.listenerContainer();
+    private final StringRedisTemplate redis = TestFixtures.redis();
+
+    @AfterEach
+    void stopListenerContainer() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Test
+    void tokensAreRevokedByTheDigestOfTheirJti() {
+        TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+
+        blacklist.blacklistToken("access-token", verified);
+
+        assertNotNull(redis.opsForValue().get(TokenBlacklistService.tokenKey("alice", TokenDigest.shortSha256("jti-1"))));
+        assertNull(redis.opsForValue().get(TokenBlacklistService.tokenKey("alice", "access-token")));
+        assertTrue(blacklist.isBlacklisted(verified));
+        assertFalse(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-2", null)));
+    }
+
+    @Test
+    void watermarkRevokesOnlyTokensIssuedBeforeIt() {
+        TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+        long now = System.currentTimeMillis();
+        VerifiedToken before = issuedAt("alice", now - 60_000);
+        VerifiedToken after = issuedAt("alice", now + 2_000);
+
+        blacklist.revokeAllIssuedBefore("alice", now);
+
+        assertTrue(blacklist.isBlacklisted(before));
+        assertFalse(blacklist.isBlacklisted(after));
+        assertFalse(blacklist.isBlacklisted(issuedAt("bob", now - 60_000)));
+    }
+
+    @Test
+    void laterWatermarkReplacesTheEarlierOne() {
+        TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+        long now = System.currentTimeMillis();
+        VerifiedToken token = issuedAt("alice", now - 30_000);
+
+        blacklist.revokeAllIssuedBefore("alice", now - 60_000);
+        assertFalse(blacklist.isBlacklisted(token));
+
+        blacklist.revokeAllIssuedBefore("alice", now);
+        assertTrue(blacklist.isBlacklisted(token));
+    }
+
+    @Test
+    void revocationOnOneReplicaIsSeenByTheOtherThroughTheChannel() {
+        TokenBlacklistService first = awaitReady(TestFixtures.blacklist(redis, listenerContainer, true));
+        TokenBlacklistService second = awaitReady(TestFixtures.blacklist(redis, listenerContainer, true));
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+
+        first.blacklistToken("access-token", verified);
+
+        TestFixtures.await(() -> second.isBlacklisted(verified), "Revocation did not reach the other replica");
+        assertFalse(second.isBlacklisted(TestFixtures.token("alice", "jti-2", null)));
+    }
+
+    @Test
+    void resyncPicksUpRevocationsWhoseMessageWasLost() {
+        TokenBlacklistService blacklist = awaitReady(TestFixtures.blacklist(redis, listenerContainer, true));
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+        storeWithoutPublishing(verified);
+
+        assertFalse(blacklist.isBlacklisted(verified));
+
+        blacklist.resync();
+
+        assertTrue(blacklist.isBlacklisted(verified));
+    }
+
+    @Test
+    void subscriptionRebuildsTheFilterFromRedis() {
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+        storeWithoutPublishing(verified);
+
+        TokenBlacklistService blacklist = awaitReady(TestFixtures.blacklist(redis, listenerContainer, true));
+
+        assertTrue(blacklist.isBlacklisted(verified));
+    }
+
+    @Test
+    void lookupsGoToRedisUntilTheChannelIsSubscribed() {
+        TokenBlacklistService blacklist = TestFixtures.blacklist(redis,
+                Mockito.mock(RedisMessageListenerContainer.class), true);
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+        storeWithoutPublishing(verified);
+
+        blacklist.resync();
+
+        assertFalse(blacklist.isFilterReady());
+        assertTrue(blacklist.isBlacklisted(verified));
+    }
+
+    @Test
+    void lookupsGoToRedisAfterUnsubscribing() {
+        TokenBlacklistService blacklist = awaitReady(TestFixtures.blacklist(redis, listenerContainer, true));
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+
+        blacklist.onChannelUnsubscribed(TokenBlacklistService.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8), 0);
+        storeWithoutPublishing(verified);
+
+        assertFalse(blacklist.isFilterReady());
+        assertTrue(blacklist.isBlacklisted(verified));
+    }
+
+    @Test
+    void resubscribingRebuildsTheFilter() {
+        TokenBlacklistService blacklist = awaitReady(TestFixtures.blacklist(redis, listenerContainer, true));
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+        storeWithoutPublishing(verified);
+
+        blacklist.onChannelSubscribed(TokenBlacklistService.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8), 1);
+
+        assertTrue(awaitReady(blacklist).isBlacklisted(verified));
+    }
+
+    @Test
+    void legacyWatermarksAreMovedToTaggedKeys() {
+        VerifiedToken verified = TestFixtures.token("alice", "jti-1", null);
+        redis.opsForValue().set(TokenBlacklistService.USER_PREFIX + "alice",
+                Long.toString(verified.issuedAtMillis() / 1000 + 1), Duration.ofMinutes(15));
+        TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+
+        blacklist.migrateLegacyEntries();
+
+        assertNull(redis.opsForValue().get(TokenBlacklistService.USER_PREFIX + "alice"));
+        assertNotNull(redis.opsForValue().get(TokenBlacklistService.watermarkKey("alice")));
+        assertTrue(blacklist.isBlacklisted(verified));
+    }
+
+    @Test
+    void legacyWholeTokenKeysAreMovedToTheDigestJwtServiceAssigns() {
+        String legacyToken = "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiJhbGljZSJ9.signature";
+        redis.opsForValue().set(legacyToken, "1", Duration.ofMinutes(15));
+        TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+
+        blacklist.migrateLegacyEntries();
+
+        assertNull(redis.opsForValue().get(legacyToken));
+        // JwtService identifica los tokens sin jti por el digest del token completo
+        assertTrue(blacklist.isBlacklisted(TestFixtures.token("alice", null, null)
+                .withTokenId(TokenDigest.sha256(legacyToken))));
+    }
+
+    @Test
+    void untaggedKeysWrittenBeforeTheDeployStillRevoke() {
+        VerifiedToken token = TestFixtures.token("alice", "jti-1", null);
+        VerifiedToken session = TestFixtures.token("alice", "jti-2", "session-1");
+        redis.opsForValue().set(TokenBlacklistService.TOKEN_PREFIX + TokenDigest.shortSha256("jti-1"), "1",
+                Duration.ofMinutes(15));
+        redis.opsForValue().set(TokenBlacklistService.TOKEN_PREFIX + TokenDigest.shortSha256("session-1"), "1",
+                Duration.ofMinutes(15));
+        TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false);
+
+        blacklist.migrateLegacyEntries();
+
+        assertTrue(blacklist.isBlacklisted(token));
+        assertTrue(blacklist.isBlacklisted(session));
+        assertFalse(blacklist.isBlacklisted(TestFixtures.token("alice", "jti-3", null)));
+        assertArrayEquals(new boolean[]{true, true, false}, blacklist.areBlacklisted(
+                List.of(token, session, TestFixtures.token("alice", "jti-3", null))));
+    }
+
+    /**
+     * Writes a revocation the way another replica does, but without its channel message.
+     */
+    private void storeWithoutPublishing(VerifiedToken verified) {
+        redis.opsForValue().set(TokenBlacklistService.tokenKey(verified.subject(),
+                TokenDigest.shortSha256(verified.tokenId())), "1", Duration.ofMinutes(15));
+    }
+
+    private static VerifiedToken issuedAt(String subject, long issuedAtMillis) {
+        return new VerifiedToken(subject, subject + "-" + issuedAtMillis, null, 1L, "user", 15,
+                issuedAtMillis, issuedAtMillis + TestFixtures.TOKEN_TTL_MILLIS);
+    }
+
+    private static TokenBlacklistService awaitReady(TokenBlacklistService blacklist) {
+        TestFixtures.await(blacklist::isFilterReady, "Revocation filter was not rebuilt");
+        return blacklist;
+    }
+}
@@ -0,0 +1,91 @@
+package com.kerro.kerroauthenticator.jwt;
+
+import com.kerro.kerroauthenticator.TestFixtures;
+import com.kerro.kerroauthenticator.dto.IntrospectionResultDTO;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenIntrospectionServiceTest {
+
+    private final SecretKey key = Keys.hmacShaKeyFor(
+            "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+    private final JwtCodec codec = new JwtCodec(key);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RedisMessageListenerContainer listenerContainer = TestFixtures.listenerContainer();
+    private final StringRedisTemplate redis = TestFixtures.redis();
+    private final TokenBlacklistService blacklist = TestFixtures.blacklist(redis, listenerContainer, false, meterRegistry);
+    private final TokenIntrospectionService introspection = new TokenIntrospectionService(
+            new JwtService(JwtKeyRing.hmac(key), TestFixtures.TOKEN_TTL_MILLIS,
+                    new VerifiedTokenCache(1000, meterRegistry), meterRegistry),
+            blacklist, new RejectedTokenCache(1000, Duration.ofMinutes(5), meterRegistry), 10);
+
+    @AfterEach
+    void stopListenerContainer() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Test
+    void resolvesTheWholeBatchWithOneRedisRoundTrip() {
+        String valid = token("alice", "jti-1");
+        String revoked = token("alice", "jti-2");
+        String loggedOut = token("bob", "jti-3");
+        blacklist.blacklistToken(revoked, codec.decode(revoked));
+        blacklist.revokeAllIssuedBefore("bob", System.currentTimeMillis() + 2_000);
+
+        List<IntrospectionResultDTO> results = introspection.introspect(
+                List.of("Bearer " + valid, revoked, loggedOut, "not-a-jwt", valid + "x"));
+
+        assertEquals(5, results.size());
+        assertTrue(results.get(0).isActive());
+        assertEquals("alice", results.get(0).getSub());
+        assertEquals("user", results.get(0).getRole());
+        for (IntrospectionResultDTO result : results.subList(1, 5)) {
+            assertFalse(result.isActive());
+        }
+        assertEquals(1, redisCalls("batch-check"));
+        assertEquals(0, redisCalls("check"));
+    }
+
+    @Test
+    void tokensRejectedBeforeAreNotLookedUpAgain() {
+        String revoked = token("alice", "jti-1");
+        blacklist.blacklistToken(revoked, codec.decode(revoked));
+
+        assertFalse(introspection.introspect(List.of(revoked)).get(0).isActive());
+        assertFalse(introspection.introspect(List.of(revoked)).get(0).isActive());
+
+        assertEquals(1, redisCalls("batch-check"));
+    }
+
+    @Test
+    void batchesAreBounded() {
+        assertThrows(IllegalArgumentException.class, () -> introspection.introspect(List.of()));
+        assertThrows(IllegalArgumentException.class,
+                () -> introspection.introspect(Collections.nCopies(11, token("alice", "jti-1"))));
+    }
+
+    private String token(String subject, String tokenId) {
+        long now = System.currentTimeMillis();
+        return codec.encode(new VerifiedToken(subject, tokenId, null, 1L, "user", 15, now,
+                now + TestFixtures.TOKEN_TTL_MILLIS));
+    }
+
+    private long redisCalls(String operation) {
+        return meterRegistry.get("kerro.blacklist.redis").tag("operation", operation).timer().count();
+    }
+}
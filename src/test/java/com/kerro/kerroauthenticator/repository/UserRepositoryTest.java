@@ -0,0 +1,59 @@
+package com.kerro.kerroauthenticator.repository;
+
+import com.kerro.kerroauthenticator.model.User;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserRepositoryTest {
+
+    private final UserRepository repository = Mockito.mock(UserRepository.class);
+    private final User alice = User.builder().id(7L).username("Alice").email("Alice@Example.com").build();
+
+    @Test
+    void emailShapedIdentifiersAreLookedUpByNormalizedEmail() {
+        when(repository.findByIdentifier(anyString())).thenCallRealMethod();
+        when(repository.findByEmailNormalized("alice@example.com")).thenReturn(Optional.of(alice));
+
+        assertEquals(Optional.of(alice), repository.findByIdentifier("  ALICE@example.COM "));
+        verify(repository, never()).findByUsernameNormalized(anyString());
+    }
+
+    @Test
+    void otherIdentifiersAreLookedUpByNormalizedUsername() {
+        when(repository.findByIdentifier(anyString())).thenCallRealMethod();
+        when(repository.findByUsernameNormalized("alice")).thenReturn(Optional.of(alice));
+
+        assertEquals(Optional.of(alice), repository.findByIdentifier(" Alice"));
+        verify(repository, never()).findByEmailNormalized(anyString());
+    }
+
+    @Test
+    void blankIdentifiersNeverReachTheDatabase() {
+        when(repository.findByIdentifier(Mockito.any())).thenCallRealMethod();
+
+        assertTrue(repository.findByIdentifier(null).isEmpty());
+        assertTrue(repository.findByIdentifier("   ").isEmpty());
+        verify(repository, never()).findByUsernameNormalized(anyString());
+        verify(repository, never()).findByEmailNormalized(anyString());
+    }
+
+    @Test
+    void entityKeepsTheNormalizedFormsInStep() {
+        User user = new User();
+        user.setUsername(" Bob ");
+        user.setEmail("Bob@Example.COM");
+
+        assertEquals("bob", user.getUsernameNormalized());
+        assertEquals("bob@example.com", user.getEmailNormalized());
+        assertEquals(" Bob ", user.getUsername());
+    }
+}
@@ -0,0 +1,123 @@
+package com.kerro.kerroauthenticator.repository;
+
+import com.kerro.kerroauthenticator.model.User;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the Flyway migrations against a real Postgres, both on a fresh database and on the schema
+ * Hibernate generated before the migrations existed.
+ */
+class UserSchemaMigrationTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static EmbeddedPostgres postgres;
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createDatabase() {
+        String name = "users_" + DATABASES.incrementAndGet();
+        new JdbcTemplate(postgres.getPostgresDatabase()).execute("CREATE DATABASE " + name);
+        dataSource = postgres.getDatabase("postgres", name);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void legacySchemaIsBackfilledAndKeepsOnlyTheNormalizedConstraints() {
+        createLegacySchema();
+        jdbc.update("INSERT INTO users VALUES (1, true, true, true, ' Alice@Example.com ', true, 'hash', 'user', ' Alice ')");
+
+        migrate();
+
+        assertEquals(List.of("alice", "alice@example.com"), jdbc.queryForObject(
+                "SELECT username_normalized, email_normalized FROM users WHERE id = 1",
+                (rs, row) -> List.of(rs.getString(1), rs.getString(2))));
+        assertEquals(List.of(User.EMAIL_CONSTRAINT, User.USERNAME_CONSTRAINT), uniqueConstraints());
+        DuplicateKeyException duplicate = assertThrows(DuplicateKeyException.class, () -> jdbc.update(
+                "INSERT INTO users VALUES (2, true, true, true, 'other@example.com', true, 'hash', 'user', 'ALICE', 'alice', 'other@example.com')"));
+        assertTrue(duplicate.getMessage().contains(User.USERNAME_CONSTRAINT), duplicate::getMessage);
+        assertEquals(50, jdbc.queryForObject("SELECT increment_by FROM pg_sequences WHERE sequencename = 'user_seq'", Long.class));
+    }
+
+    @Test
+    void caseOnlyDuplicatesStopTheMigration() {
+        createLegacySchema();
+        jdbc.update("INSERT INTO users VALUES (1, true, true, true, 'bob@example.com', true, 'hash', 'user', 'Bob')");
+        jdbc.update("INSERT INTO users VALUES (2, true, true, true, 'bobby@example.com', true, 'hash', 'user', 'bob')");
+
+        FlywayException ex = assertThrows(FlywayException.class, this::migrate);
+
+        assertTrue(ex.getMessage().contains("usernames that differ only in case"), ex::getMessage);
+    }
+
+    @Test
+    void freshDatabaseGetsTheTableWithItsIndexes() {
+        migrate();
+
+        assertEquals(List.of(User.EMAIL_CONSTRAINT, User.USERNAME_CONSTRAINT), uniqueConstraints());
+        assertEquals(List.of("ix_users_email_normalized_trgm", "ix_users_username_normalized_trgm"), jdbc.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename = 'users' AND indexname LIKE '%trgm' ORDER BY 1",
+                String.class));
+    }
+
+    /**
+     * Schema Hibernate created from the original entity: {@code @Column(unique = true)} on username gave an
+     * auto-named constraint, and an email constraint added by hand gets the Postgres default name.
+     */
+    private void createLegacySchema() {
+        jdbc.execute("CREATE SEQUENCE user_seq START WITH 1 INCREMENT BY 1");
+        jdbc.execute("""
+                CREATE TABLE users (
+                    id bigint NOT NULL PRIMARY KEY,
+                    account_non_expired boolean NOT NULL,
+                    account_non_locked boolean NOT NULL,
+                    credentials_non_expired boolean NOT NULL,
+                    email varchar(255) NOT NULL,
+                    enabled boolean NOT NULL,
+                    password varchar(255) NOT NULL,
+                    role varchar(255),
+                    username varchar(255) NOT NULL
+                )""");
+        jdbc.execute("ALTER TABLE users ADD CONSTRAINT ukr43af9ap4edm43mmtq01oddj6 UNIQUE (username)");
+        jdbc.execute("ALTER TABLE users ADD UNIQUE (email)");
+    }
+
+    private void migrate() {
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).load().migrate();
+    }
+
+    private List<String> uniqueConstraints() {
+        return jdbc.queryForList("""
+                SELECT conname FROM pg_constraint
+                 WHERE conrelid = 'users'::regclass AND contype = 'u'
+                 ORDER BY conname""", String.class);
+    }
+}
@@ -0,0 +1,66 @@
+package com.kerro.kerroauthenticator.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    void replicasCalibratedDifferentlyLeaveEachOthersHashesAlone() {
+        CalibratedBCryptPasswordEncoder slower = new CalibratedBCryptPasswordEncoder(6, 4);
+        CalibratedBCryptPasswordEncoder faster = new CalibratedBCryptPasswordEncoder(5, 4);
+
+        assertFalse(faster.upgradeEncoding(slower.encode("secret")));
+        assertFalse(slower.upgradeEncoding(faster.encode("secret")));
+    }
+
+    @Test
+    void onlyHashesBelowTheFloorAreUpgraded() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(6, 5);
+
+        assertTrue(encoder.upgradeEncoding(hash(4)));
+        assertFalse(encoder.upgradeEncoding(hash(5)));
+        assertFalse(encoder.upgradeEncoding(hash(7)));
+    }
+
+    @Test
+    void pinnedCostIsAlsoTheFloor() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+        assertEquals(5, encoder.getUpgradeFloor());
+        assertTrue(encoder.upgradeEncoding(hash(4)));
+        assertFalse(encoder.upgradeEncoding(hash(5)));
+    }
+
+    @Test
+    void calibrationUsesTheConfiguredMinimumAsFloor() {
+        CalibratedBCryptPasswordEncoder encoder = CalibratedBCryptPasswordEncoder.calibrate(Duration.ZERO, 4, 6);
+
+        assertEquals(4, encoder.getStrength());
+        assertEquals(4, encoder.getUpgradeFloor());
+    }
+
+    @Test
+    void floorAboveTheCostIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CalibratedBCryptPasswordEncoder(5, 6));
+    }
+
+    @Test
+    void nonBcryptValuesAreNotUpgraded() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+        assertFalse(encoder.upgradeEncoding(null));
+        assertFalse(encoder.upgradeEncoding("plain"));
+    }
+
+    private static String hash(int cost) {
+        return BCrypt.hashpw("secret", BCrypt.gensalt(cost));
+    }
+}
@@ -0,0 +1,34 @@
+package com.kerro.kerroauthenticator.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalRateLimiterTest {
+
+    private final LocalRateLimiter limiter = new LocalRateLimiter(1000, Duration.ofMinutes(1));
+
+    @Test
+    void allowsBurstUpToCapacityThenRejects() {
+        RateLimit limit = new RateLimit("test", 3, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("client", limit));
+        }
+        long wait = limiter.tryAcquire("client", limit);
+
+        assertTrue(wait > 0 && wait <= 20_000, "expected to wait about one emission interval, got " + wait);
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        RateLimit limit = new RateLimit("test", 1, Duration.ofMinutes(1));
+
+        assertEquals(0, limiter.tryAcquire("a", limit));
+        assertTrue(limiter.tryAcquire("a", limit) > 0);
+        assertEquals(0, limiter.tryAcquire("b", limit));
+    }
+}
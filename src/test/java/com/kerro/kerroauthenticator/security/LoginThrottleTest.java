@@ -0,0 +1,67 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.kerro.kerroauthenticator.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginThrottleTest {
+
+    private final LoginThrottle throttle = throttle(true);
+
+    @Test
+    void clientsBehindTheSameBalancerKeepSeparateIpBuckets() {
+        throttle.checkLogin("203.0.113.1", "alice");
+        throttle.checkLogin("203.0.113.1", "bob");
+
+        assertThrows(TooManyRequestsException.class, () -> throttle.checkLogin("203.0.113.1", "carol"));
+        assertDoesNotThrow(() -> throttle.checkLogin("203.0.113.2", "carol"));
+    }
+
+    @Test
+    void identifierBucketIsSharedAcrossIpsAndSpellings() {
+        throttle.checkLogin("203.0.113.1", "Alice");
+        throttle.checkLogin("203.0.113.2", " alice ");
+        throttle.checkLogin("203.0.113.3", "ALICE");
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> throttle.checkLogin("203.0.113.4", "alice"));
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+    }
+
+    @Test
+    void signupHasItsOwnLimit() {
+        throttle.checkSignup("203.0.113.1");
+
+        assertThrows(TooManyRequestsException.class, () -> throttle.checkSignup("203.0.113.1"));
+        assertDoesNotThrow(() -> throttle.checkLogin("203.0.113.1", "alice"));
+    }
+
+    @Test
+    void refreshIsLimitedPerIpWithoutSpendingLoginAttempts() {
+        throttle.checkRefresh("203.0.113.1");
+        throttle.checkRefresh("203.0.113.1");
+
+        assertThrows(TooManyRequestsException.class, () -> throttle.checkRefresh("203.0.113.1"));
+        assertDoesNotThrow(() -> throttle.checkLogin("203.0.113.1", "alice"));
+    }
+
+    @Test
+    void disabledThrottleNeverRejects() {
+        LoginThrottle disabled = throttle(false);
+
+        for (int i = 0; i < 10; i++) {
+            disabled.checkLogin("203.0.113.1", "alice");
+            disabled.checkSignup("203.0.113.1");
+        }
+    }
+
+    private static LoginThrottle throttle(boolean enabled) {
+        Duration minute = Duration.ofMinutes(1);
+        return new LoginThrottle(null, enabled, "local", 1000, 2, minute, 3, minute, 1, minute);
+    }
+}
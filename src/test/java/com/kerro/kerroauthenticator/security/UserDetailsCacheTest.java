@@ -0,0 +1,138 @@
+package com.kerro.kerroauthenticator.security;
+
+import com.kerro.kerroauthenticator.TestFixtures;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserDetailsCacheTest {
+
+    private final RedisMessageListenerContainer listenerContainer = TestFixtures.listenerContainer();
+    private final StringRedisTemplate redis = TestFixtures.redis();
+    private final UserRepository repository = Mockito.mock(UserRepository.class);
+    private final UserDetailsCache cache = cache(repository);
+    private final UserCacheListener listener = new UserCacheListener(provider(cache));
+    private final User alice = User.builder().id(7L).username("Alice").email("alice@example.com")
+            .password("hash").role("user").build();
+
+    @AfterEach
+    void stopListenerContainer() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void cachesASnapshotReachableByUsernameAndEmail() {
+        when(repository.findByIdentifier("alice")).thenReturn(Optional.of(alice));
+
+        CachedUser cached = cache.find(" ALICE ").orElseThrow();
+        alice.setRole("admin");
+
+        assertNotSame(alice, cached);
+        assertEquals("user", cached.getRole());
+        assertEquals(7L, cache.find("alice@example.com").orElseThrow().getId());
+        verify(repository, times(1)).findByIdentifier(anyString());
+    }
+
+    @Test
+    void updateOutsideATransactionEvictsRightAway() {
+        when(repository.findByIdentifier("alice")).thenReturn(Optional.of(alice));
+        cache.find("alice");
+
+        alice.setRole("admin");
+        listener.onChange(alice);
+
+        assertEquals("admin", cache.find("alice").orElseThrow().getRole());
+    }
+
+    @Test
+    void updateInsideATransactionEvictsAfterCommit() {
+        when(repository.findByIdentifier("alice")).thenReturn(Optional.of(alice));
+        cache.find("alice");
+        TransactionSynchronizationManager.initSynchronization();
+
+        alice.setRole("admin");
+        listener.onChange(alice);
+        assertEquals("user", cache.find("alice").orElseThrow().getRole());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals("admin", cache.find("alice").orElseThrow().getRole());
+    }
+
+    @Test
+    void renamedUserIsEvictedUnderItsOldName() {
+        when(repository.findByIdentifier("alice")).thenReturn(Optional.of(alice));
+        cache.find("alice");
+
+        alice.setUsername("alicia");
+        listener.onChange(alice);
+        when(repository.findByIdentifier("alice")).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), cache.find("alice"));
+    }
+
+    @Test
+    void renamedUserIsEvictedUnderItsOldEmailOnOtherReplicas() {
+        UserRepository otherRepository = Mockito.mock(UserRepository.class);
+        UserDetailsCache otherReplica = cache(otherRepository);
+        when(otherRepository.findByIdentifier("alice@example.com")).thenReturn(Optional.of(alice));
+        otherReplica.find("alice@example.com");
+
+        alice.setEmail("alicia@example.com");
+        listener.onChange(alice);
+        when(otherRepository.findByIdentifier("alice@example.com")).thenReturn(Optional.empty());
+
+        TestFixtures.await(() -> otherReplica.find("alice@example.com").isEmpty(),
+                "Old email was not evicted on the other replica");
+    }
+
+    @Test
+    void otherReplicasEvictThroughTheChannel() {
+        UserRepository otherRepository = Mockito.mock(UserRepository.class);
+        UserDetailsCache otherReplica = cache(otherRepository);
+        when(otherRepository.findByIdentifier("alice")).thenReturn(Optional.of(alice));
+        otherReplica.find("alice");
+
+        alice.setRole("admin");
+        listener.onChange(alice);
+
+        TestFixtures.await(() -> "admin".equals(otherReplica.find("alice").orElseThrow().getRole()),
+                "Invalidation did not reach the other replica");
+    }
+
+    private UserDetailsCache cache(UserRepository userRepository) {
+        return new UserDetailsCache(userRepository, redis, listenerContainer, new SimpleMeterRegistry(),
+                Duration.ofMinutes(5), 100);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<UserDetailsCache> provider(UserDetailsCache cache) {
+        ObjectProvider<UserDetailsCache> provider = Mockito.mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(cache);
+        return provider;
+    }
+}
@@ -0,0 +1,78 @@
+package com.kerro.kerroauthenticator.service;
+
+import com.kerro.kerroauthenticator.dto.RegisterUserDTO;
+import com.kerro.kerroauthenticator.exception.user.EmailAlreadyExistException;
+import com.kerro.kerroauthenticator.exception.user.UserAlreadyExistException;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.repository.UserRepository;
+import com.kerro.kerroauthenticator.security.UserDetailsCache;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthenticationServiceTest {
+
+    private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+    private final PasswordEncoder passwordEncoder = Mockito.mock(PasswordEncoder.class);
+    private final AuthenticationService authenticationService = new AuthenticationService(userRepository,
+            passwordEncoder, Mockito.mock(AuthenticationConfiguration.class), Mockito.mock(UserDetailsCache.class));
+
+    @Test
+    void emailConstraintMapsToEmailTakenWithoutQuerying() {
+        failInsertOn(User.EMAIL_CONSTRAINT);
+
+        assertThrows(EmailAlreadyExistException.class, () -> authenticationService.signup(signup()));
+        verify(userRepository, never()).findByEmailNormalized(anyString());
+    }
+
+    @Test
+    void usernameConstraintMapsToUsernameTakenWithoutQuerying() {
+        failInsertOn(User.USERNAME_CONSTRAINT.toUpperCase());
+
+        assertThrows(UserAlreadyExistException.class, () -> authenticationService.signup(signup()));
+        verify(userRepository, never()).findByEmailNormalized(anyString());
+    }
+
+    @Test
+    void unknownConstraintFallsBackToLookingTheEmailUp() {
+        failInsertOn("users_email_key");
+        when(userRepository.findByEmailNormalized("alice@example.com")).thenReturn(Optional.of(new User()));
+
+        assertThrows(EmailAlreadyExistException.class, () -> authenticationService.signup(signup()));
+    }
+
+    @Test
+    void unknownConstraintWithFreeEmailIsTheUsername() {
+        failInsertOn(null);
+        when(userRepository.findByEmailNormalized("alice@example.com")).thenReturn(Optional.empty());
+
+        assertThrows(UserAlreadyExistException.class, () -> authenticationService.signup(signup()));
+    }
+
+    private void failInsertOn(String constraint) {
+        when(passwordEncoder.encode(anyString())).thenReturn("hash");
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", new SQLException("23505"), constraint)));
+    }
+
+    private static RegisterUserDTO signup() {
+        RegisterUserDTO input = new RegisterUserDTO();
+        input.setUsername("Alice");
+        input.setEmail("Alice@Example.com");
+        input.setPassword("secret");
+        return input;
+    }
+}
@@ -0,0 +1,148 @@
+package com.kerro.kerroauthenticator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kerro.kerroauthenticator.dto.UserImportResultDTO;
+import com.kerro.kerroauthenticator.dto.UserImportResultDTO.RowError;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+    private final PasswordEncoder passwordEncoder = Mockito.mock(PasswordEncoder.class);
+    private final UserImportService service = new UserImportService(jdbcTemplate, passwordEncoder, new ObjectMapper(), 100, 1);
+    private final List<Object[]> inserted = new ArrayList<>();
+
+    UserImportServiceTest() {
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hashed:" + invocation.getArgument(0));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(50L);
+    }
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        conflictsAt();
+        String csv = """
+                username,email,password,role
+                alice,alice@example.com,"a,b \"\"c\"\"",admin
+                "bob", bob@example.com ,"two
+                lines",
+                """;
+
+        UserImportResultDTO result = service.importUsers(body(csv), false);
+
+        assertEquals(2, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertArrayEquals(new Object[]{"alice", "alice@example.com", "alice", "alice@example.com",
+                "hashed:a,b \"c\"", "admin"}, values(inserted.get(0)));
+        assertArrayEquals(new Object[]{"bob", "bob@example.com", "bob", "bob@example.com",
+                "hashed:two\nlines", "user"}, values(inserted.get(1)));
+    }
+
+    @Test
+    void conflictsAreReportedWithTheirLine() throws IOException {
+        conflictsAt(1);
+        String csv = """
+                username,email,password
+                alice,alice@example.com,"multi
+                line"
+                Bob,bob@example.com,secret
+                carol,carol@example.com,secret
+                """;
+
+        UserImportResultDTO result = service.importUsers(body(csv), false);
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getConflicts());
+        RowError error = result.getErrors().get(0);
+        assertEquals(4, error.line());
+        assertEquals("Bob", error.username());
+    }
+
+    @Test
+    void rowsWithTheWrongNumberOfColumnsAreRejected() throws IOException {
+        conflictsAt();
+        String csv = """
+                username,email,password
+                alice,alice@example.com,"pass,word"
+                bob,bob@example.com,pass,word
+                """;
+
+        UserImportResultDTO result = service.importUsers(body(csv), false);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(3, result.getErrors().get(0).line());
+    }
+
+    @Test
+    void malformedRecordStopsTheImportAndKeepsEarlierRows() throws IOException {
+        conflictsAt();
+        String csv = """
+                username,email,password
+                alice,alice@example.com,secret
+                bob,bob@example.com,"unterminated
+                carol,carol@example.com,secret
+                """;
+
+        UserImportResultDTO result = service.importUsers(body(csv), false);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(3, result.getErrors().get(0).line());
+        assertTrue(result.getErrors().get(0).reason().startsWith("Malformed CSV"));
+    }
+
+    @Test
+    void emptyBodyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.importUsers(body(""), false));
+    }
+
+    private void conflictsAt(int... rows) {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            int[] counts = new int[args.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = 1;
+                for (int row : rows) {
+                    if (row == i) counts[i] = 0;
+                }
+                if (counts[i] == 1) inserted.add(args.get(i));
+            }
+            return counts;
+        });
+    }
+
+    /** Drops the generated id. */
+    private static Object[] values(Object[] args) {
+        Object[] values = new Object[args.length - 1];
+        System.arraycopy(args, 1, values, 0, values.length);
+        return values;
+    }
+
+    private static ByteArrayInputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
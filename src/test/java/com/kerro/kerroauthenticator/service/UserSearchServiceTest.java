@@ -0,0 +1,131 @@
+package com.kerro.kerroauthenticator.service;
+
+import com.kerro.kerroauthenticator.dto.UserDTO;
+import com.kerro.kerroauthenticator.model.User;
+import com.kerro.kerroauthenticator.repository.UserRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the search queries on Postgres, where the LIKE escaping and the keyset order actually apply.
+ */
+@DataJpaTest(properties = {"users.search.default-limit=2", "users.search.max-limit=3"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(UserSearchService.class)
+class UserSearchServiceTest {
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @DynamicPropertySource
+    static void dataSource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        POSTGRES.close();
+    }
+
+    @Test
+    void pagesFollowTheIdCursorWithoutGapsOrRepeats() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(save("member" + i, "member" + i + "@example.com").getId());
+        }
+        save("other", "other@example.com");
+
+        List<Long> seen = new ArrayList<>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            UserSearchService.Page page = userSearchService.search("MEMBER", cursor, null);
+            page.users().forEach(user -> seen.add(user.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void pageSizeIsCappedAndLastPageHasNoCursor() {
+        for (int i = 0; i < 4; i++) {
+            save("capped" + i, "capped" + i + "@example.com");
+        }
+
+        UserSearchService.Page first = userSearchService.search("capped", null, 50);
+        UserSearchService.Page second = userSearchService.search("capped", first.nextCursor(), 50);
+
+        assertEquals(3, first.users().size());
+        assertEquals(1, second.users().size());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void wildcardsInTheTermMatchOnlyThemselves() {
+        save("snake_case", "snake@example.com");
+        save("snakeXcase", "snakex@example.com");
+        save("full100%", "full@example.com");
+        save("full1000", "full1000@example.com");
+        save("back\\slash", "back@example.com");
+        save("backXslash", "backx@example.com");
+
+        assertEquals(List.of("snake_case"), usernames(userSearchService.search("e_c", null, null)));
+        assertEquals(List.of("full100%"), usernames(userSearchService.search("00%", null, null)));
+        assertEquals(List.of("back\\slash"), usernames(userSearchService.search("k\\s", null, null)));
+    }
+
+    @Test
+    void termsWithAtSignSearchTheEmail() {
+        save("carol", "carol@corp.example");
+        save("corp@user", "dave@example.com");
+
+        assertEquals(List.of("carol"), usernames(userSearchService.search("@CORP", null, null)));
+    }
+
+    @Test
+    void shortTermsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> userSearchService.search(" ab ", null, null));
+        assertThrows(IllegalArgumentException.class, () -> userSearchService.search(null, null, null));
+    }
+
+    private User save(String username, String email) {
+        return userRepository.save(User.builder().username(username).email(email).password("hash").role("user").build());
+    }
+
+    private static List<String> usernames(UserSearchService.Page page) {
+        return page.users().stream().map(UserDTO::getUsername).toList();
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to start embedded Postgres", ex);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.kerro.kerroauthenticator.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private final List<CircuitBreaker.State> transitions = new ArrayList<>();
+
+    @Test
+    void opensAfterConsecutiveFailuresAndClosesOnSuccessfulProbe() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofMillis(50), transitions::add);
+
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire(), "a success in between resets the failure count");
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire(), "first call after the open period is the probe");
+        assertFalse(breaker.tryAcquire(), "only one probe at a time");
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+                transitions);
+    }
+
+    @Test
+    void failedProbeReopens() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMillis(50), transitions::add);
+
+        breaker.onFailure();
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void callAnswersExpectedFailuresWithTheFallback() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMinutes(1), transitions::add);
+
+        String answer = breaker.call(() -> {
+            throw new IllegalStateException("down");
+        }, IllegalStateException.class, ex -> "fallback:" + ex.getMessage());
+        String refused = breaker.call(() -> "redis", IllegalStateException.class, ex -> {
+            assertNull(ex);
+            return "refused";
+        });
+
+        assertEquals("fallback:down", answer);
+        assertEquals("refused", refused);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void probeFailingWithAnUnexpectedExceptionDoesNotLeaveTheCircuitHalfOpen() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMillis(50), transitions::add);
+        breaker.onFailure();
+        Thread.sleep(60);
+
+        assertThrows(IllegalArgumentException.class, () -> breaker.call(() -> {
+            throw new IllegalArgumentException("bug");
+        }, IllegalStateException.class, ex -> "fallback"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(60);
+        assertEquals("redis", breaker.call(() -> "redis", IllegalStateException.class, ex -> "fallback"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,24 @@
+package com.kerro.kerroauthenticator.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogSamplerTest {
+
+    @Test
+    void suppressesEventsOverPermitsAndReportsThemOnTheNextLoggedEvent() throws InterruptedException {
+        LogSampler sampler = new LogSampler(2, Duration.ofMillis(50));
+
+        assertEquals(0, sampler.tryAcquire());
+        assertEquals(0, sampler.tryAcquire());
+        assertEquals(-1, sampler.tryAcquire());
+        assertEquals(-1, sampler.tryAcquire());
+
+        Thread.sleep(60);
+        assertEquals(2, sampler.tryAcquire());
+        assertEquals(0, sampler.tryAcquire());
+    }
+}